@@ -0,0 +1,75 @@
+package com.ecommerce.benchmarks;
+
+import com.ecommerce.repositories.ProductJdbcRepository;
+import com.ecommerce.repositories.StockShardRepository;
+import com.ecommerce.services.HotStockService;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout throughput on one contended product, with its stock on the products row
+ * (shards = 1) or split across stock shards.
+ * 
+ * Every operation is one committed transaction taking a unit of stock, as a
+ * single-line checkout does. Runs against an in-memory H2 database holding just
+ * the two tables involved, so the numbers show lock contention rather than I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class HotStockBenchmark {
+    
+    private static final long PRODUCT_ID = 1;
+    
+    @Param({"1", "8", "32"})
+    public int shards;
+    
+    private HikariDataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+    private HotStockService hotStockService;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:hot_stock_" + shards + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(32);
+        dataSource = new HikariDataSource(config);
+        
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, stock_quantity INT NOT NULL, "
+                + "version BIGINT NOT NULL, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE product_stock_shards (product_id BIGINT NOT NULL, shard INT NOT NULL, "
+                + "quantity INT NOT NULL, PRIMARY KEY (product_id, shard))");
+        jdbcTemplate.update("INSERT INTO products (id, stock_quantity, version) VALUES (?, ?, 0)",
+                PRODUCT_ID, Integer.MAX_VALUE / 2);
+        
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        hotStockService = new HotStockService(new StockShardRepository(jdbcTemplate),
+                new ProductJdbcRepository(jdbcTemplate), transactionTemplate);
+        if (shards > 1) {
+            hotStockService.enable(PRODUCT_ID, shards);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        dataSource.close();
+    }
+    
+    @Benchmark
+    public Boolean checkout() {
+        return transactionTemplate.execute(status -> hotStockService.decrementStock(PRODUCT_ID, 1));
+    }
+}
@@ -0,0 +1,57 @@
+package com.ecommerce.benchmarks;
+
+import com.ecommerce.config.CacheConfig;
+import com.ecommerce.entities.Role;
+import com.ecommerce.entities.User;
+import com.ecommerce.security.JwtUtil;
+import com.ecommerce.security.VerifiedToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access-token verification as JwtAuthenticationFilter runs it, with a cold cache
+ * (every call checks the HMAC signature and decodes the claims) and with the
+ * verified-token cache the application uses (one SHA-256 digest and a lookup).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class TokenVerificationBenchmark {
+    
+    private static final String SECRET = "benchmark-secret-key-for-jwt-token-generation-minimum-256-bits";
+    
+    @Param({"cold", "cached"})
+    public String cache;
+    
+    private JwtUtil jwtUtil;
+    private String token;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Cache<String, VerifiedToken> verifiedTokenCache = "cached".equals(cache)
+                ? new CacheConfig().verifiedTokenCache(100_000)
+                : Caffeine.newBuilder().maximumSize(0).executor(Runnable::run).build();
+        jwtUtil = new JwtUtil(verifiedTokenCache);
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        jwtUtil.init();
+        token = jwtUtil.generateToken(User.builder()
+                .id(42L)
+                .email("benchmark@example.com")
+                .role(Role.USER)
+                .build());
+    }
+    
+    @Benchmark
+    public VerifiedToken verify() {
+        return jwtUtil.verifyToken(token);
+    }
+}
@@ -0,0 +1,186 @@
+package com.ecommerce.config;
+
+import com.ecommerce.dto.CategoryDTO;
+import com.ecommerce.dto.CheckoutTicketDTO;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.VersionStamp;
+import com.ecommerce.entities.IdempotencyRecord;
+import com.ecommerce.entities.Role;
+import com.ecommerce.security.TokenBucket;
+import com.ecommerce.security.VerifiedToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Configuration for in-process caches: near-caches of catalog reads, stored idempotent
+ * responses, async checkout results, verified tokens, user roles for token checks and
+ * failed login counters and rate limit buckets.
+ * Caffeine uses W-TinyLFU admission, so one-off scans do not evict hot entries.
+ */
+@Configuration
+public class CacheConfig {
+    
+    @Bean
+    public Cache<Long, ProductDTO> productCache(
+            @Value("${catalog.cache.products.max-size:10000}") long maxSize,
+            @Value("${catalog.cache.products.ttl:10m}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    @Bean
+    public Cache<Long, VersionStamp> productVersionCache(
+            @Value("${catalog.cache.versions.max-size:100000}") long maxSize,
+            @Value("${catalog.cache.versions.ttl:10m}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    @Bean
+    public Cache<Long, VersionStamp> categoryVersionCache(
+            @Value("${catalog.cache.versions.max-size:100000}") long maxSize,
+            @Value("${catalog.cache.versions.ttl:10m}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    @Bean
+    public Cache<String, IdempotencyRecord> idempotencyCache(
+            @Value("${idempotency.cache.max-size:10000}") long maxSize,
+            @Value("${idempotency.ttl:24h}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Results of async checkouts, keyed by user id and token, kept for clients to poll.
+     */
+    @Bean
+    public Cache<String, CheckoutTicketDTO> checkoutTicketCache(
+            @Value("${checkout.async.results.max-size:100000}") long maxSize,
+            @Value("${checkout.async.results.ttl:10m}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Current role per user id, for the optional check that a token's user still exists
+     * with the role it claims. The TTL bounds how long a revoked token keeps working.
+     */
+    @Bean
+    public Cache<Long, Role> userRoleCache(
+            @Value("${jwt.revocation-check.max-size:100000}") long maxSize,
+            @Value("${jwt.revocation-check.ttl:30s}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Verified JWTs keyed by a digest of the token, so the requests of a client reusing
+     * one token skip signature verification and decoding. Each entry expires with its token.
+     */
+    @Bean
+    public Cache<String, VerifiedToken> verifiedTokenCache(
+            @Value("${jwt.cache.max-size:100000}") long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, token.getExpiresAt() - System.currentTimeMillis()));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+    
+    @Bean
+    public Cache<Long, CategoryDTO> categoryCache(
+            @Value("${catalog.cache.categories.max-size:1000}") long maxSize,
+            @Value("${catalog.cache.categories.ttl:10m}") Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Failed logins per account within the throttling window, counted from the first failure.
+     */
+    @Bean
+    public Cache<String, LongAdder> loginFailuresByAccount(
+            @Value("${security.login.max-tracked:100000}") long maxSize,
+            @Value("${security.login.window:15m}") Duration window) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(window)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Failed logins per client address within the throttling window, counted from the first failure.
+     */
+    @Bean
+    public Cache<String, LongAdder> loginFailuresByIp(
+            @Value("${security.login.max-tracked:100000}") long maxSize,
+            @Value("${security.login.window:15m}") Duration window) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(window)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Rate limit token buckets per route group and client. A bucket idle for longer than
+     * it takes to refill is full anyway, so expiring it loses nothing.
+     */
+    @Bean
+    public Cache<String, TokenBucket> rateLimitBuckets(
+            @Value("${rate-limit.max-clients:100000}") long maxSize,
+            @Value("${rate-limit.idle-timeout:10m}") Duration idleTimeout) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+    }
+}
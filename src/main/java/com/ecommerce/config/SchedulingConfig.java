@@ -0,0 +1,12 @@
+package com.ecommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled background tasks such as change-log polling.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
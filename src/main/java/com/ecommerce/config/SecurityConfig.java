@@ -1,8 +1,11 @@
 package com.ecommerce.config;
 
+import com.ecommerce.security.BoundedPasswordEncoder;
 import com.ecommerce.security.CustomUserDetailsService;
 import com.ecommerce.security.JwtAuthenticationFilter;
+import com.ecommerce.security.RateLimitFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -30,6 +33,16 @@ public class SecurityConfig {
     
     private final CustomUserDetailsService userDetailsService;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+    
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+    
+    @Value("${security.password.hashing.threads:0}")
+    private int hashingThreads;
+    
+    @Value("${security.password.hashing.queue-capacity:64}")
+    private int hashingQueueCapacity;
     
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -62,6 +75,8 @@ public class SecurityConfig {
                 )
                 .authenticationProvider(authenticationProvider())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // Rate limit after authentication, so signed-in clients are keyed by user id
+                .addFilterAfter(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 // Enable H2 console (for development)
                 .headers(headers -> headers.frameOptions(frame -> frame.sameOrigin()));
         
@@ -73,6 +88,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService);
         provider.setPasswordEncoder(passwordEncoder());
+        // Rewrites a user's hash on login when it was made with another BCrypt cost
+        provider.setUserDetailsPasswordService(userDetailsService);
         return provider;
     }
     
@@ -81,8 +98,12 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
     
+    /**
+     * BCrypt at the configured cost, run on a bounded pool off the request threads.
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength),
+                bcryptStrength, hashingThreads, hashingQueueCapacity);
     }
 }
@@ -1,11 +1,14 @@
 package com.ecommerce.controllers;
 
 import com.ecommerce.dto.*;
+import com.ecommerce.security.VerifiedToken;
 import com.ecommerce.services.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -33,8 +36,34 @@ public class AuthController {
      * POST /api/auth/login
      */
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
-        AuthResponse response = userService.login(request);
+    public ResponseEntity<AuthResponse> login(
+            @Valid @RequestBody LoginRequest request,
+            HttpServletRequest servletRequest) {
+        AuthResponse response = userService.login(request, servletRequest.getRemoteAddr());
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Exchange a refresh token for a new access token and refresh token.
+     * POST /api/auth/refresh
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        AuthResponse response = userService.refresh(request);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Revoke the access token sent with the request and, when given, the refresh token.
+     * POST /api/auth/logout
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            Authentication authentication,
+            @RequestBody(required = false) RefreshTokenRequest request) {
+        VerifiedToken accessToken = authentication != null
+                && authentication.getCredentials() instanceof VerifiedToken token ? token : null;
+        userService.logout(accessToken, request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -0,0 +1,47 @@
+package com.ecommerce.controllers;
+
+import com.ecommerce.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for near-cache monitoring endpoints.
+ */
+@RestController
+@RequestMapping("/api/admin/caches")
+@RequiredArgsConstructor
+public class CacheController {
+    
+    private final Map<String, Cache<?, ?>> caches;
+    
+    /**
+     * Get hit/miss/eviction statistics for every cache (admin only).
+     * GET /api/admin/caches
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<CacheStatsDTO>> getCacheStats() {
+        List<CacheStatsDTO> stats = caches.entrySet().stream()
+                .map(entry -> {
+                    CacheStats cacheStats = entry.getValue().stats();
+                    return CacheStatsDTO.builder()
+                            .name(entry.getKey())
+                            .size(entry.getValue().estimatedSize())
+                            .hitCount(cacheStats.hitCount())
+                            .missCount(cacheStats.missCount())
+                            .hitRate(cacheStats.hitRate())
+                            .evictionCount(cacheStats.evictionCount())
+                            .build();
+                })
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -2,14 +2,18 @@ package com.ecommerce.controllers;
 
 import com.ecommerce.dto.AddToCartRequest;
 import com.ecommerce.dto.CartDTO;
+import com.ecommerce.dto.ReservationDTO;
+import com.ecommerce.dto.VersionStamp;
 import com.ecommerce.entities.User;
+import com.ecommerce.security.CurrentUser;
 import com.ecommerce.services.CartService;
-import com.ecommerce.services.UserService;
+import com.ecommerce.services.EntityVersionService;
+import com.ecommerce.services.StockReservationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.Map;
 
@@ -22,15 +26,19 @@ import java.util.Map;
 public class CartController {
     
     private final CartService cartService;
-    private final UserService userService;
+    private final EntityVersionService entityVersionService;
+    private final StockReservationService stockReservationService;
     
     /**
-     * Get current user's cart.
+     * Get current user's cart, or 304 when the client's copy is current.
      * GET /api/cart
      */
     @GetMapping
-    public ResponseEntity<CartDTO> getCart(Authentication authentication) {
-        User user = getCurrentUser(authentication);
+    public ResponseEntity<CartDTO> getCart(@CurrentUser User user, WebRequest webRequest) {
+        VersionStamp version = entityVersionService.getCartVersion(user.getId());
+        if (version != null && webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
         CartDTO cart = cartService.getCart(user);
         return ResponseEntity.ok(cart);
     }
@@ -41,9 +49,8 @@ public class CartController {
      */
     @PostMapping("/items")
     public ResponseEntity<CartDTO> addToCart(
-            Authentication authentication,
+            @CurrentUser User user,
             @Valid @RequestBody AddToCartRequest request) {
-        User user = getCurrentUser(authentication);
         CartDTO cart = cartService.addToCart(user, request);
         return ResponseEntity.ok(cart);
     }
@@ -54,10 +61,9 @@ public class CartController {
      */
     @PutMapping("/items/{itemId}")
     public ResponseEntity<CartDTO> updateCartItem(
-            Authentication authentication,
+            @CurrentUser User user,
             @PathVariable Long itemId,
             @RequestBody Map<String, Integer> request) {
-        User user = getCurrentUser(authentication);
         int quantity = request.getOrDefault("quantity", 1);
         CartDTO cart = cartService.updateCartItem(user, itemId, quantity);
         return ResponseEntity.ok(cart);
@@ -69,9 +75,8 @@ public class CartController {
      */
     @DeleteMapping("/items/{itemId}")
     public ResponseEntity<CartDTO> removeFromCart(
-            Authentication authentication,
+            @CurrentUser User user,
             @PathVariable Long itemId) {
-        User user = getCurrentUser(authentication);
         CartDTO cart = cartService.removeFromCart(user, itemId);
         return ResponseEntity.ok(cart);
     }
@@ -81,14 +86,29 @@ public class CartController {
      * DELETE /api/cart
      */
     @DeleteMapping
-    public ResponseEntity<Void> clearCart(Authentication authentication) {
-        User user = getCurrentUser(authentication);
+    public ResponseEntity<Void> clearCart(@CurrentUser User user) {
         cartService.clearCart(user);
         return ResponseEntity.noContent().build();
     }
     
-    private User getCurrentUser(Authentication authentication) {
-        String email = authentication.getName();
-        return userService.getUserByEmail(email);
+    /**
+     * Start checkout: hold the stock of every cart line until the hold expires.
+     * Calling it again replaces the previous holds.
+     * POST /api/cart/checkout
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<ReservationDTO> startCheckout(@CurrentUser User user) {
+        ReservationDTO reservation = stockReservationService.reserveCart(user);
+        return ResponseEntity.ok(reservation);
+    }
+    
+    /**
+     * Leave checkout and release the held stock.
+     * DELETE /api/cart/checkout
+     */
+    @DeleteMapping("/checkout")
+    public ResponseEntity<Void> cancelCheckout(@CurrentUser User user) {
+        stockReservationService.releaseHolds(user.getId());
+        return ResponseEntity.noContent().build();
     }
 }
@@ -1,12 +1,18 @@
 package com.ecommerce.controllers;
 
 import com.ecommerce.dto.CategoryDTO;
+import com.ecommerce.dto.CategoryTreeDTO;
+import com.ecommerce.dto.VersionStamp;
+import com.ecommerce.services.CatalogSnapshotService;
 import com.ecommerce.services.CategoryService;
+import com.ecommerce.services.EntityVersionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -20,33 +26,63 @@ import java.util.Map;
 public class CategoryController {
     
     private final CategoryService categoryService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final EntityVersionService entityVersionService;
     
     /**
-     * Get all categories.
+     * Get all categories, from the pre-serialized snapshot when it is current.
      * GET /api/categories
      */
     @GetMapping
-    public ResponseEntity<List<CategoryDTO>> getAllCategories() {
+    public ResponseEntity<?> getAllCategories(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ResponseEntity<byte[]> snapshot = catalogSnapshotService.respond(
+                CatalogSnapshotService.Key.CATEGORIES, acceptEncoding, ifNoneMatch);
+        if (snapshot != null) {
+            return snapshot;
+        }
         List<CategoryDTO> categories = categoryService.getAllCategories();
         return ResponseEntity.ok(categories);
     }
     
     /**
-     * Get top-level categories.
+     * Get top-level categories, from the pre-serialized snapshot when it is current.
      * GET /api/categories/top
      */
     @GetMapping("/top")
-    public ResponseEntity<List<CategoryDTO>> getTopLevelCategories() {
+    public ResponseEntity<?> getTopLevelCategories(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ResponseEntity<byte[]> snapshot = catalogSnapshotService.respond(
+                CatalogSnapshotService.Key.TOP_CATEGORIES, acceptEncoding, ifNoneMatch);
+        if (snapshot != null) {
+            return snapshot;
+        }
         List<CategoryDTO> categories = categoryService.getTopLevelCategories();
         return ResponseEntity.ok(categories);
     }
     
     /**
-     * Get category by ID.
+     * Get the full category hierarchy.
+     * GET /api/categories/tree
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryTreeDTO>> getCategoryTree() {
+        List<CategoryTreeDTO> tree = categoryService.getCategoryTree();
+        return ResponseEntity.ok(tree);
+    }
+    
+    /**
+     * Get category by ID, or 304 when the client's copy is current.
      * GET /api/categories/{id}
      */
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryDTO> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<CategoryDTO> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
+        VersionStamp version = entityVersionService.getCategoryVersion(id);
+        if (version != null && webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
         CategoryDTO category = categoryService.getCategoryById(id);
         return ResponseEntity.ok(category);
     }
@@ -61,6 +97,16 @@ public class CategoryController {
         return ResponseEntity.ok(categories);
     }
     
+    /**
+     * Get breadcrumbs from the top-level category down to this one.
+     * GET /api/categories/{id}/breadcrumbs
+     */
+    @GetMapping("/{id}/breadcrumbs")
+    public ResponseEntity<List<CategoryDTO>> getBreadcrumbs(@PathVariable Long id) {
+        List<CategoryDTO> breadcrumbs = categoryService.getBreadcrumbs(id);
+        return ResponseEntity.ok(breadcrumbs);
+    }
+    
     /**
      * Create category (admin only).
      * POST /api/categories
@@ -79,20 +125,25 @@ public class CategoryController {
     }
     
     /**
-     * Update category (admin only).
+     * Update category (admin only). With If-Match, fails with 412 if the
+     * category changed since the client read it.
      * PUT /api/categories/{id}
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<CategoryDTO> updateCategory(
             @PathVariable Long id,
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         String name = request.get("name");
         String description = request.get("description");
         String imageUrl = request.get("imageUrl");
         
-        CategoryDTO category = categoryService.updateCategory(id, name, description, imageUrl);
-        return ResponseEntity.ok(category);
+        CategoryDTO category = categoryService.updateCategory(id, name, description, imageUrl, ifMatch);
+        VersionStamp version = entityVersionService.getCategoryVersion(id);
+        return ResponseEntity.ok()
+                .eTag(version != null ? version.getEtag() : null)
+                .body(category);
     }
     
     /**
@@ -1,17 +1,25 @@
 package com.ecommerce.controllers;
 
+import com.ecommerce.dto.CheckoutTicketDTO;
 import com.ecommerce.dto.CreateOrderRequest;
 import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.dto.VersionStamp;
+import com.ecommerce.entities.Role;
 import com.ecommerce.entities.User;
+import com.ecommerce.security.CurrentUser;
+import com.ecommerce.services.AsyncCheckoutService;
+import com.ecommerce.services.EntityVersionService;
+import com.ecommerce.services.IdempotencyService;
 import com.ecommerce.services.OrderService;
-import com.ecommerce.services.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.net.URI;
 import java.util.List;
 
 /**
@@ -23,28 +31,36 @@ import java.util.List;
 public class OrderController {
     
     private final OrderService orderService;
-    private final UserService userService;
+    private final EntityVersionService entityVersionService;
+    private final IdempotencyService idempotencyService;
+    private final AsyncCheckoutService asyncCheckoutService;
     
     /**
      * Get current user's orders.
      * GET /api/orders
      */
     @GetMapping
-    public ResponseEntity<List<OrderDTO>> getUserOrders(Authentication authentication) {
-        User user = getCurrentUser(authentication);
+    public ResponseEntity<List<OrderDTO>> getUserOrders(@CurrentUser User user) {
         List<OrderDTO> orders = orderService.getUserOrders(user);
         return ResponseEntity.ok(orders);
     }
     
     /**
-     * Get order by ID.
+     * Get order by ID, or 304 when the client's copy is current. Other users'
+     * orders always take the full path, which rejects them.
      * GET /api/orders/{id}
      */
     @GetMapping("/{id}")
     public ResponseEntity<OrderDTO> getOrderById(
-            Authentication authentication,
-            @PathVariable Long id) {
-        User user = getCurrentUser(authentication);
+            @CurrentUser User user,
+            @PathVariable Long id,
+            WebRequest webRequest) {
+        VersionStamp version = entityVersionService.getOrderVersion(id);
+        if (version != null
+                && (user.getId().equals(version.getOwnerId()) || user.getRole() == Role.ADMIN)
+                && webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
         OrderDTO order = orderService.getOrderById(user, id);
         return ResponseEntity.ok(order);
     }
@@ -52,18 +68,55 @@ public class OrderController {
     /**
      * Create order from cart.
      * POST /api/orders
+     * 
+     * With an Idempotency-Key header, retries return the order created first
+     * instead of placing another one.
      */
     @PostMapping
     public ResponseEntity<OrderDTO> createOrder(
-            Authentication authentication,
+            @CurrentUser User user,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody CreateOrderRequest request) {
-        User user = getCurrentUser(authentication);
-        OrderDTO order = orderService.createOrder(user, request);
-        return new ResponseEntity<>(order, HttpStatus.CREATED);
+        return idempotencyService.execute(user.getId(), "order", idempotencyKey, request,
+                HttpStatus.CREATED, OrderDTO.class, () -> orderService.createOrder(user, request));
     }
     
-    private User getCurrentUser(Authentication authentication) {
-        String email = authentication.getName();
-        return userService.getUserByEmail(email);
+    /**
+     * Queue a checkout of the cart and return a ticket to poll.
+     * POST /api/orders/async
+     * 
+     * Answers 202 while the checkout is queued, or 201 with the order when async
+     * checkout is disabled and the order was created right away. With an
+     * Idempotency-Key header, retries return the ticket issued first instead of
+     * queueing another checkout.
+     */
+    @PostMapping("/async")
+    public ResponseEntity<CheckoutTicketDTO> createOrderAsync(
+            @CurrentUser User user,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CreateOrderRequest request) {
+        HttpStatus status = asyncCheckoutService.isRunning() ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+        ResponseEntity<CheckoutTicketDTO> response = idempotencyService.execute(user.getId(), "order-async",
+                idempotencyKey, request, status, CheckoutTicketDTO.class,
+                () -> asyncCheckoutService.submit(user, request));
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .location(URI.create("/api/orders/checkouts/" + response.getBody().getToken()))
+                .body(response.getBody());
+    }
+    
+    /**
+     * Get the state of a queued checkout.
+     * GET /api/orders/checkouts/{token}
+     */
+    @GetMapping("/checkouts/{token}")
+    public ResponseEntity<CheckoutTicketDTO> getCheckout(
+            @CurrentUser User user,
+            @PathVariable String token) {
+        CheckoutTicketDTO ticket = asyncCheckoutService.getTicket(user.getId(), token);
+        if (ticket.getStatus() == CheckoutTicketDTO.CheckoutStatus.PENDING) {
+            return ResponseEntity.ok().header(HttpHeaders.RETRY_AFTER, "1").body(ticket);
+        }
+        return ResponseEntity.ok(ticket);
     }
 }
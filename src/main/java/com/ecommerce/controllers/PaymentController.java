@@ -2,11 +2,12 @@ package com.ecommerce.controllers;
 
 import com.ecommerce.dto.PaymentIntentResponse;
 import com.ecommerce.entities.User;
+import com.ecommerce.security.CurrentUser;
+import com.ecommerce.services.IdempotencyService;
 import com.ecommerce.services.PaymentService;
-import com.ecommerce.services.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -20,22 +21,23 @@ import java.util.Map;
 public class PaymentController {
     
     private final PaymentService paymentService;
-    private final UserService userService;
+    private final IdempotencyService idempotencyService;
     
     /**
      * Create a payment intent for an order.
      * POST /api/payments/create-intent
+     * 
+     * With an Idempotency-Key header, retries return the intent created first.
      */
     @PostMapping("/create-intent")
     public ResponseEntity<PaymentIntentResponse> createPaymentIntent(
-            Authentication authentication,
+            @CurrentUser User user,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, Long> request) {
-        // Verify user is authenticated
-        getCurrentUser(authentication);
-        
         Long orderId = request.get("orderId");
-        PaymentIntentResponse response = paymentService.createPaymentIntent(orderId);
-        return ResponseEntity.ok(response);
+        return idempotencyService.execute(user.getId(), "payment-intent", idempotencyKey, request,
+                HttpStatus.OK, PaymentIntentResponse.class,
+                () -> paymentService.createPaymentIntent(orderId, idempotencyKey));
     }
     
     /**
@@ -73,19 +75,11 @@ public class PaymentController {
      */
     @PostMapping("/confirm")
     public ResponseEntity<String> confirmPayment(
-            Authentication authentication,
             @RequestBody Map<String, Object> request) {
-        getCurrentUser(authentication);
-        
         String paymentIntentId = (String) request.get("paymentIntentId");
         Long orderId = Long.valueOf(request.get("orderId").toString());
         
         paymentService.handlePaymentSuccess(paymentIntentId, orderId);
         return ResponseEntity.ok("Payment confirmed");
     }
-    
-    private User getCurrentUser(Authentication authentication) {
-        String email = authentication.getName();
-        return userService.getUserByEmail(email);
-    }
 }
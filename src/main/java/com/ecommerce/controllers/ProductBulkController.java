@@ -0,0 +1,78 @@
+package com.ecommerce.controllers;
+
+import com.ecommerce.dto.ProductBulkUpdate;
+import com.ecommerce.dto.ProductBulkUpdateResult;
+import com.ecommerce.dto.ProductImportResult;
+import com.ecommerce.services.HotStockService;
+import com.ecommerce.services.ProductBulkUpdateService;
+import com.ecommerce.services.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Controller for bulk product administration endpoints.
+ */
+@RestController
+@RequestMapping("/api/admin/products")
+@RequiredArgsConstructor
+public class ProductBulkController {
+    
+    private final ProductImportService productImportService;
+    private final ProductBulkUpdateService productBulkUpdateService;
+    private final HotStockService hotStockService;
+    
+    /**
+     * Stream a CSV or NDJSON product feed into the catalog (admin only).
+     * POST /api/admin/products/import
+     * Content-Type: text/csv (with a header row) or application/x-ndjson
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductImportResult> importProducts(HttpServletRequest request) throws IOException {
+        ProductImportResult result = productImportService.importProducts(
+                request.getInputStream(), request.getContentType());
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Update price, stock and active flag of many products (admin only).
+     * PATCH /api/admin/products
+     * Body: [{"id": 1, "price": 19.99, "stockQuantity": 40, "active": true}, ...]
+     */
+    @PatchMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductBulkUpdateResult> updateProducts(@RequestBody List<ProductBulkUpdate> updates) {
+        ProductBulkUpdateResult result = productBulkUpdateService.updateProducts(updates);
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Split a product's stock across counter shards for a promotion (admin only).
+     * POST /api/admin/products/{id}/hot-stock?shards=8
+     */
+    @PostMapping("/{id}/hot-stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> enableHotStock(
+            @PathVariable Long id,
+            @RequestParam(value = "shards", defaultValue = "8") int shards) {
+        hotStockService.enable(id, shards);
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * Move a product's stock back to the products row (admin only).
+     * DELETE /api/admin/products/{id}/hot-stock
+     */
+    @DeleteMapping("/{id}/hot-stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> disableHotStock(@PathVariable Long id) {
+        hotStockService.disable(id);
+        return ResponseEntity.noContent().build();
+    }
+}
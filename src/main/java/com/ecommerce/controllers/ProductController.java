@@ -1,14 +1,29 @@
 package com.ecommerce.controllers;
 
 import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductFacetResult;
+import com.ecommerce.dto.ProductFilterRequest;
+import com.ecommerce.dto.ProductPage;
+import com.ecommerce.dto.ProductPageRequest;
 import com.ecommerce.dto.ProductRequest;
+import com.ecommerce.dto.StockAvailabilityDTO;
+import com.ecommerce.dto.SuggestionDTO;
+import com.ecommerce.dto.VersionStamp;
+import com.ecommerce.services.CatalogSnapshotService;
+import com.ecommerce.services.EntityVersionService;
+import com.ecommerce.services.ProductExportService;
 import com.ecommerce.services.ProductService;
+import com.ecommerce.services.StockReservationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -21,47 +36,140 @@ import java.util.List;
 public class ProductController {
     
     private final ProductService productService;
+    private final ProductExportService productExportService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final EntityVersionService entityVersionService;
+    private final StockReservationService stockReservationService;
     
     /**
-     * Get all active products.
+     * Get the default first page of active products, from the pre-serialized
+     * snapshot when it is current.
      * GET /api/products
      */
+    @GetMapping(params = {"!sort", "!direction", "!size", "!cursor", "!ids"})
+    public ResponseEntity<?> getFirstProductPage(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ResponseEntity<byte[]> snapshot = catalogSnapshotService.respond(
+                CatalogSnapshotService.Key.FIRST_PRODUCT_PAGE, acceptEncoding, ifNoneMatch);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        ProductPage products = productService.getAllProducts(new ProductPageRequest());
+        return ResponseEntity.ok(products);
+    }
+    
+    /**
+     * Get a page of active products.
+     * GET /api/products?sort=price&direction=asc&size=20&cursor=token
+     */
     @GetMapping
-    public ResponseEntity<List<ProductDTO>> getAllProducts() {
-        List<ProductDTO> products = productService.getAllProducts();
+    public ResponseEntity<ProductPage> getAllProducts(ProductPageRequest page) {
+        ProductPage products = productService.getAllProducts(page);
+        return ResponseEntity.ok(products);
+    }
+    
+    /**
+     * Get several products by ID in one request, in the requested order.
+     * GET /api/products?ids=3,1,7
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<ProductDTO>> getProductsByIds(@RequestParam("ids") List<Long> ids) {
+        List<ProductDTO> products = productService.getProductsByIds(ids);
         return ResponseEntity.ok(products);
     }
     
     /**
-     * Get product by ID.
+     * Get product by ID. Answers 304 from the version lookup alone when the
+     * client's ETag or Last-Modified is still current.
      * GET /api/products/{id}
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id, WebRequest webRequest) {
+        VersionStamp version = entityVersionService.getProductVersion(id);
+        if (version != null && webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
         ProductDTO product = productService.getProductById(id);
         return ResponseEntity.ok(product);
     }
     
     /**
-     * Get products by category.
-     * GET /api/products/category/{categoryId}
+     * Get a product's stock net of the holds of checkouts in progress.
+     * GET /api/products/{id}/availability
+     */
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<StockAvailabilityDTO> getAvailability(@PathVariable Long id) {
+        StockAvailabilityDTO availability = stockReservationService.getAvailability(id);
+        return ResponseEntity.ok(availability);
+    }
+    
+    /**
+     * Get a page of products by category.
+     * GET /api/products/category/{categoryId}?includeSubcategories=true&cursor=token
      */
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<List<ProductDTO>> getProductsByCategory(@PathVariable Long categoryId) {
-        List<ProductDTO> products = productService.getProductsByCategory(categoryId);
+    public ResponseEntity<ProductPage> getProductsByCategory(
+            @PathVariable Long categoryId,
+            @RequestParam(value = "includeSubcategories", defaultValue = "false") boolean includeSubcategories,
+            ProductPageRequest page) {
+        ProductPage products = productService.getProductsByCategory(categoryId, includeSubcategories, page);
         return ResponseEntity.ok(products);
     }
     
     /**
-     * Search products by name.
-     * GET /api/products/search?q=query
+     * Search a page of products by name.
+     * GET /api/products/search?q=query&cursor=token
      */
     @GetMapping("/search")
-    public ResponseEntity<List<ProductDTO>> searchProducts(@RequestParam("q") String query) {
-        List<ProductDTO> products = productService.searchProducts(query);
+    public ResponseEntity<ProductPage> searchProducts(
+            @RequestParam("q") String query,
+            ProductPageRequest page) {
+        ProductPage products = productService.searchProducts(query, page);
         return ResponseEntity.ok(products);
     }
     
+    /**
+     * Typeahead completions for the search box.
+     * GET /api/products/suggest?prefix=gal&limit=10
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam("prefix") String prefix,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        List<SuggestionDTO> suggestions = productService.suggest(prefix, limit);
+        return ResponseEntity.ok(suggestions);
+    }
+    
+    /**
+     * Stream every active product as NDJSON for feed partners.
+     * Compressed with gzip when the client sends Accept-Encoding: gzip.
+     * GET /api/products/export
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = output -> productExportService.exportActiveProducts(output, gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalog.ndjson\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+    
+    /**
+     * Filter products with facet counts.
+     * GET /api/products/filter?categoryId=1&minPrice=20&maxPrice=50&inStock=true
+     */
+    @GetMapping("/filter")
+    public ResponseEntity<ProductFacetResult> filterProducts(ProductFilterRequest filter) {
+        ProductFacetResult result = productService.filterProducts(filter);
+        return ResponseEntity.ok(result);
+    }
+    
     /**
      * Create a new product (admin only).
      * POST /api/products
@@ -74,16 +182,21 @@ public class ProductController {
     }
     
     /**
-     * Update a product (admin only).
+     * Update a product (admin only). With If-Match, fails with 412 if the
+     * product changed since the client read it.
      * PUT /api/products/{id}
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ProductDTO> updateProduct(
             @PathVariable Long id,
-            @Valid @RequestBody ProductRequest request) {
-        ProductDTO product = productService.updateProduct(id, request);
-        return ResponseEntity.ok(product);
+            @Valid @RequestBody ProductRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ProductDTO product = productService.updateProduct(id, request, ifMatch);
+        VersionStamp version = entityVersionService.getProductVersion(id);
+        return ResponseEntity.ok()
+                .eTag(version != null ? version.getEtag() : null)
+                .body(product);
     }
     
     /**
@@ -1,7 +1,11 @@
 package com.ecommerce.controllers;
 
+import com.ecommerce.dto.ChangePasswordRequest;
 import com.ecommerce.dto.UserDTO;
+import com.ecommerce.entities.User;
+import com.ecommerce.security.CurrentUser;
 import com.ecommerce.services.UserService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -39,4 +43,17 @@ public class UserController {
         UserDTO user = userService.getUserById(id);
         return ResponseEntity.ok(user);
     }
+    
+    /**
+     * Change the current user's password. Every token of the user is revoked,
+     * including the one used for this request.
+     * PUT /api/users/me/password
+     */
+    @PutMapping("/me/password")
+    public ResponseEntity<Void> changePassword(
+            @CurrentUser User user,
+            @Valid @RequestBody ChangePasswordRequest request) {
+        userService.changePassword(user, request);
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -3,7 +3,8 @@ package com.ecommerce.dto;
 import lombok.*;
 
 /**
- * DTO for authentication response containing JWT token.
+ * DTO for authentication response containing a short-lived JWT access token and
+ * the refresh token to renew it with.
  */
 @Data
 @NoArgsConstructor
@@ -12,6 +13,9 @@ import lombok.*;
 public class AuthResponse {
     private String token;
     private String type = "Bearer";
+    /** Lifetime of the access token in seconds. */
+    private Long expiresIn;
+    private String refreshToken;
     private UserDTO user;
     
     public AuthResponse(String token, UserDTO user) {
@@ -0,0 +1,19 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+
+/**
+ * DTO for near-cache statistics.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CacheStatsDTO {
+    private String name;
+    private Long size;
+    private Long hitCount;
+    private Long missCount;
+    private Double hitRate;
+    private Long evictionCount;
+}
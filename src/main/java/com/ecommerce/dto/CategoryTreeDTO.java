@@ -0,0 +1,20 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.util.List;
+
+/**
+ * DTO for a category with its nested subcategories.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryTreeDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private String imageUrl;
+    private Integer depth;
+    private List<CategoryTreeDTO> children;
+}
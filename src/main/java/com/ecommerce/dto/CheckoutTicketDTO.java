@@ -0,0 +1,27 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * DTO for a checkout queued in async mode: pending until a worker commits it,
+ * then carrying the order or the reason it failed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CheckoutTicketDTO {
+    private String token;
+    private CheckoutStatus status;
+    private OrderDTO order;
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    
+    public enum CheckoutStatus {
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.math.BigDecimal;
+
+/**
+ * One row of a bulk product update. Null fields are left unchanged.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductBulkUpdate {
+    private Long id;
+    private BigDecimal price;
+    private Integer stockQuantity;
+    private Boolean active;
+}
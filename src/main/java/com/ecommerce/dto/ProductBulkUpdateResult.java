@@ -0,0 +1,36 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.util.List;
+
+/**
+ * Outcome of a bulk product update, with one entry per requested row in request order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductBulkUpdateResult {
+    private int updated;
+    private int unchanged;
+    private int failed;
+    private List<RowOutcome> outcomes;
+    
+    public enum Status {
+        UPDATED,
+        UNCHANGED,
+        NOT_FOUND,
+        INVALID,
+        FAILED
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowOutcome {
+        private Long id;
+        private Status status;
+        private String message;
+    }
+}
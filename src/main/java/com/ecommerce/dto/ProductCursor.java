@@ -0,0 +1,74 @@
+package com.ecommerce.dto;
+
+import com.ecommerce.entities.Product;
+import com.ecommerce.exceptions.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset continuation token for product listings.
+ * Encodes the sort key, direction and the position of the last row returned.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductCursor {
+    
+    private static final String SEPARATOR = "|";
+    
+    private final ProductSortField sort;
+    private final boolean ascending;
+    private final Long lastId;
+    private final String lastValue;
+    
+    /**
+     * Build the cursor pointing just after the given product.
+     */
+    public static ProductCursor after(Product product, ProductSortField sort, boolean ascending) {
+        return new ProductCursor(sort, ascending, product.getId(), sort.extract(product));
+    }
+    
+    /**
+     * Build the cursor pointing just after the given product summary.
+     */
+    public static ProductCursor after(ProductSummary product, ProductSortField sort, boolean ascending) {
+        return new ProductCursor(sort, ascending, product.getId(), sort.extract(product));
+    }
+    
+    /**
+     * Last sort key value, typed for comparison against the entity attribute.
+     */
+    public Comparable<?> getSortValue() {
+        return sort.parse(lastValue);
+    }
+    
+    /**
+     * Encode as a URL-safe token.
+     */
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + (ascending ? "A" : "D") + SEPARATOR + lastId + SEPARATOR + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a token produced by {@link #encode()}.
+     */
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            ProductSortField sort = ProductSortField.valueOf(parts[0]);
+            ProductCursor cursor = new ProductCursor(sort, "A".equals(parts[1]), Long.valueOf(parts[2]), parts[3]);
+            cursor.getSortValue();
+            return cursor;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO for a filtered product page with facet counts.
+ * Each facet is counted with every filter applied except its own.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductFacetResult {
+    private ProductPage products;
+    private Integer total;
+    private List<CategoryFacet> categories;
+    private List<PriceBandFacet> priceBands;
+    private Integer inStockCount;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CategoryFacet {
+        private Long categoryId;
+        private String categoryName;
+        private Integer count;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PriceBandFacet {
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private Integer count;
+    }
+}
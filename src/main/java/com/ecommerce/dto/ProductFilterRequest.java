@@ -0,0 +1,21 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.math.BigDecimal;
+
+/**
+ * Query parameters for faceted product filtering.
+ * Results are paged by product id using the cursor of the previous page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductFilterRequest {
+    private Long categoryId;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private Boolean inStock;
+    private Integer size;
+    private String cursor;
+}
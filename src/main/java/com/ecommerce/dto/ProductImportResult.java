@@ -0,0 +1,33 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.util.List;
+
+/**
+ * Outcome of a bulk product import.
+ * Only the first rejected rows are listed; {@code errorsTruncated} is set when more were dropped.
+ * {@code incomplete} is set when the feed broke off; the last error then says where.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductImportResult {
+    private long rowsRead;
+    private long imported;
+    private long failed;
+    private int batches;
+    private long durationMillis;
+    private List<RowError> errors;
+    private boolean errorsTruncated;
+    private boolean incomplete;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
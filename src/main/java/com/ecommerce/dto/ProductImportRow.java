@@ -0,0 +1,22 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.math.BigDecimal;
+
+/**
+ * One product row of a bulk import feed.
+ * The category is given either by id or by name; the id wins when both are set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductImportRow {
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private Integer stockQuantity;
+    private String imageUrl;
+    private Long categoryId;
+    private String category;
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.util.List;
+
+/**
+ * DTO for one page of a keyset-paginated product listing.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPage {
+    private List<ProductSummary> items;
+    private String nextCursor;
+    private Boolean hasMore;
+    private Integer size;
+}
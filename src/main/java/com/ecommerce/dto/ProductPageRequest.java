@@ -0,0 +1,18 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+
+/**
+ * Query parameters for keyset-paginated product listings.
+ * Sort and direction may be omitted when a cursor is supplied.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPageRequest {
+    private String sort;
+    private String direction;
+    private Integer size;
+    private String cursor;
+}
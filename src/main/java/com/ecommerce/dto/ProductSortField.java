@@ -0,0 +1,92 @@
+package com.ecommerce.dto;
+
+import com.ecommerce.entities.Product;
+import com.ecommerce.exceptions.BadRequestException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Stable sort keys supported by the paginated product listing.
+ * Every key is combined with the product id as a tie-breaker.
+ * RELEVANCE is a search score rather than a product attribute.
+ */
+public enum ProductSortField {
+    ID("id"),
+    PRICE("price"),
+    CREATED_AT("createdAt"),
+    NAME("name"),
+    RELEVANCE("relevance");
+    
+    private final String attribute;
+    
+    ProductSortField(String attribute) {
+        this.attribute = attribute;
+    }
+    
+    /**
+     * Entity attribute the key maps to.
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+    
+    /**
+     * Read the key value of a product in its cursor string form.
+     */
+    public String extract(Product product) {
+        return format(product.getId(), product.getPrice(), product.getCreatedAt(), product.getName());
+    }
+    
+    /**
+     * Read the key value of a product summary in its cursor string form.
+     */
+    public String extract(ProductSummary product) {
+        return format(product.getId(), product.getPrice(), product.getCreatedAt(), product.getName());
+    }
+    
+    private String format(Long id, BigDecimal price, LocalDateTime createdAt, String name) {
+        switch (this) {
+            case PRICE:
+                return price.toPlainString();
+            case CREATED_AT:
+                return createdAt.toString();
+            case NAME:
+                return name;
+            case RELEVANCE:
+                throw new IllegalStateException("Relevance is not a product attribute");
+            default:
+                return id.toString();
+        }
+    }
+    
+    /**
+     * Parse a cursor string back into a value comparable with the attribute.
+     */
+    public Comparable<?> parse(String value) {
+        switch (this) {
+            case PRICE:
+                return new BigDecimal(value);
+            case CREATED_AT:
+                return LocalDateTime.parse(value);
+            case NAME:
+                return value;
+            case RELEVANCE:
+                return Float.valueOf(value);
+            default:
+                return Long.valueOf(value);
+        }
+    }
+    
+    /**
+     * Resolve a request parameter such as "price" or "createdAt".
+     */
+    public static ProductSortField fromParam(String param) {
+        for (ProductSortField field : values()) {
+            if (field.attribute.equalsIgnoreCase(param) || field.name().equalsIgnoreCase(param)) {
+                return field;
+            }
+        }
+        throw new BadRequestException("Unsupported sort key: " + param);
+    }
+}
@@ -0,0 +1,26 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Lean product representation for list endpoints.
+ * Fetched directly as a query projection, without the description and
+ * without loading managed Product entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductSummary {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private Integer stockQuantity;
+    private String imageUrl;
+    private Long categoryId;
+    private String categoryName;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+
+/**
+ * DTO for a request carrying a refresh token.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshTokenRequest {
+    
+    @NotBlank(message = "Refresh token is required")
+    private String refreshToken;
+}
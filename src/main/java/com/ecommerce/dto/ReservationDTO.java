@@ -0,0 +1,26 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for the stock held for a user's checkout until {@code expiresAt}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReservationDTO {
+    private LocalDateTime expiresAt;
+    private List<Hold> holds;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Hold {
+        private Long productId;
+        private Integer quantity;
+    }
+}
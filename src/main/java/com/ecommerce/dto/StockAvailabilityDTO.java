@@ -0,0 +1,17 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+
+/**
+ * DTO for a product's stock net of the holds of checkouts in progress.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockAvailabilityDTO {
+    private Long productId;
+    private Integer stockQuantity;
+    private Integer reserved;
+    private Integer available;
+}
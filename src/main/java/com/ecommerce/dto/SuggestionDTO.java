@@ -0,0 +1,16 @@
+package com.ecommerce.dto;
+
+import lombok.*;
+
+/**
+ * DTO for a typeahead completion: a product or category name.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionDTO {
+    private String type;
+    private Long id;
+    private String text;
+}
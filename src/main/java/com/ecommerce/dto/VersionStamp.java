@@ -0,0 +1,23 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Current version of a resource representation, used for conditional requests.
+ * The ETag covers every entity the representation embeds, such as the category
+ * of a product or the products in a cart.
+ */
+@Getter
+@AllArgsConstructor
+public class VersionStamp {
+    
+    /** Quoted strong entity tag. */
+    private final String etag;
+    
+    /** Last modification time in epoch milliseconds, or -1 if unknown. */
+    private final long lastModified;
+    
+    /** Owning user for per-user resources such as orders, otherwise null. */
+    private final Long ownerId;
+}
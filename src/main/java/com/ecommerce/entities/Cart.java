@@ -30,6 +30,10 @@ public class Cart {
     @Builder.Default
     private List<CartItem> items = new ArrayList<>();
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -81,4 +85,11 @@ public class Cart {
     public void clear() {
         items.clear();
     }
+
+    /**
+     * Marks the cart as modified, so its version advances when only its items change.
+     */
+    public void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
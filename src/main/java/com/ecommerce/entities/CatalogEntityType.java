@@ -0,0 +1,9 @@
+package com.ecommerce.entities;
+
+/**
+ * Enum representing the kinds of catalog entities recorded in the change log.
+ */
+public enum CatalogEntityType {
+    PRODUCT,
+    CATEGORY
+}
@@ -20,7 +20,8 @@ import java.util.List;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_id")
+    @SequenceGenerator(name = "orders_id", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,6 +43,10 @@ public class Order {
     @Column(name = "stripe_payment_id")
     private String stripePaymentId;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Column(name = "order_date")
     private LocalDateTime orderDate;
 
@@ -45,6 +45,10 @@ public class Product {
     @Builder.Default
     private Boolean isActive = true;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -0,0 +1,45 @@
+package com.ecommerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing one entry of the access token revocation log: either a single
+ * token id, or every token of a user issued before a point in time.
+ * Rows are append-only and ordered by id, which acts as the log sequence number.
+ */
+@Entity
+@Table(name = "token_revocations")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TokenRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_id", length = 36)
+    private String tokenId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "revoked_before")
+    private LocalDateTime revokedBefore;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    /** When every token covered by this entry has expired and the entry can be dropped. */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
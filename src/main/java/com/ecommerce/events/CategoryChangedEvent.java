@@ -0,0 +1,15 @@
+package com.ecommerce.events;
+
+import com.ecommerce.dto.CategoryDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by CategoryService after a category is created, updated or deleted.
+ */
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    private final CategoryDTO category;
+    private final boolean deleted;
+}
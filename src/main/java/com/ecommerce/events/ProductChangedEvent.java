@@ -0,0 +1,15 @@
+package com.ecommerce.events;
+
+import com.ecommerce.dto.ProductDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by ProductService after a product is created, updated or deleted.
+ * Carries the product state as of the change; deleted products are inactive.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final ProductDTO product;
+}
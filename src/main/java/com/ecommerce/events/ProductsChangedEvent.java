@@ -0,0 +1,17 @@
+package com.ecommerce.events;
+
+import com.ecommerce.dto.ProductDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Published after a bulk write commits, carrying the new state of every changed product.
+ * Listeners apply the whole batch at once instead of handling one ProductChangedEvent per product.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductsChangedEvent {
+    private final List<ProductDTO> products;
+}
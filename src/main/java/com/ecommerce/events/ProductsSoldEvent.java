@@ -0,0 +1,15 @@
+package com.ecommerce.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Published by OrderService when a checkout takes stock, with the units sold per product id.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductsSoldEvent {
+    private final Map<Long, Integer> quantities;
+}
@@ -2,8 +2,13 @@ package com.ecommerce.repositories;
 
 import com.ecommerce.entities.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,7 +23,22 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
     
     /**
-     * Delete all items from a cart.
+     * Whether the user's cart has any items.
      */
-    void deleteByCartId(Long cartId);
+    boolean existsByCartUserId(Long userId);
+    
+    /**
+     * Total quantity per product in each of the given users' carts, as
+     * [userId, productId, quantity] rows.
+     */
+    @Query("SELECT ci.cart.user.id, ci.product.id, SUM(ci.quantity) FROM CartItem ci " +
+           "WHERE ci.cart.user.id IN :userIds GROUP BY ci.cart.user.id, ci.product.id")
+    List<Object[]> sumQuantityByUserAndProduct(@Param("userIds") Collection<Long> userIds);
+    
+    /**
+     * Delete all items from a cart with one statement, flushing pending changes first.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int deleteAllByCartId(@Param("cartId") Long cartId);
 }
@@ -2,10 +2,13 @@ package com.ecommerce.repositories;
 
 import com.ecommerce.entities.Cart;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -20,8 +23,25 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserId(Long userId);
     
     /**
-     * Find a cart with items by user ID.
+     * Bump a cart's version and modification time without loading it.
      */
-    @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items ci LEFT JOIN FETCH ci.product WHERE c.user.id = :userId")
+    @Modifying
+    @Query("UPDATE Cart c SET c.version = c.version + 1, c.updatedAt = :now WHERE c.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /**
+     * Find a cart with items, their products and the products' categories by user ID.
+     */
+    @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items ci LEFT JOIN FETCH ci.product p " +
+           "LEFT JOIN FETCH p.category WHERE c.user.id = :userId")
     Optional<Cart> findByUserIdWithItems(@Param("userId") Long userId);
+    
+    /**
+     * Find the version of a user's cart and of every product in it, without loading entities.
+     * Returns one row of [version, updatedAt, productId, productVersion, productUpdatedAt] per item,
+     * a single row with null product columns for an empty cart, or none without a cart.
+     */
+    @Query("SELECT c.version, c.updatedAt, p.id, p.version, p.updatedAt FROM Cart c " +
+           "LEFT JOIN c.items ci LEFT JOIN ci.product p WHERE c.user.id = :userId")
+    List<Object[]> findVersionsByUserId(@Param("userId") Long userId);
 }
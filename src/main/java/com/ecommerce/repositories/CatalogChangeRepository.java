@@ -0,0 +1,29 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.entities.CatalogChange;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository for CatalogChange entity operations.
+ */
+@Repository
+public interface CatalogChangeRepository extends SequenceLogRepository<CatalogChange> {
+    
+    /**
+     * Find the latest sequence number, or null if the log is empty.
+     */
+    @Query("SELECT MAX(c.id) FROM CatalogChange c")
+    Long findMaxId();
+    
+    /**
+     * Delete changes older than the given time.
+     */
+    @Modifying
+    @Query("DELETE FROM CatalogChange c WHERE c.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
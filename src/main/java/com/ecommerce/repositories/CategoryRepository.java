@@ -2,8 +2,11 @@ package com.ecommerce.repositories;
 
 import com.ecommerce.entities.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,4 +30,24 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
      * Find subcategories of a parent category.
      */
     List<Category> findByParentId(Long parentId);
+    
+    /**
+     * Find a category by ID with its parent in a single query.
+     */
+    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.parent WHERE c.id = :id")
+    Optional<Category> findWithParentById(@Param("id") Long id);
+    
+    /**
+     * Find categories by ID with their parents in a single query.
+     */
+    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.parent WHERE c.id IN :ids")
+    List<Category> findAllWithParentByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find the version and modification time of a category and its parent, without loading entities.
+     * Returns one row of [version, updatedAt, parentVersion, parentUpdatedAt], or none.
+     */
+    @Query("SELECT c.version, c.updatedAt, p.version, p.updatedAt FROM Category c LEFT JOIN c.parent p " +
+           "WHERE c.id = :id")
+    List<Object[]> findVersionById(@Param("id") Long id);
 }
@@ -0,0 +1,60 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.entities.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Repository for IdempotencyRecord entity operations.
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    
+    /**
+     * Find the record of a user's key for an operation.
+     */
+    Optional<IdempotencyRecord> findByUserIdAndOperationAndIdempotencyKey(Long userId, String operation,
+                                                                          String idempotencyKey);
+    
+    /**
+     * Hand an in-progress key over to a new owner once its lease has run out.
+     * 
+     * @return 1 if the caller now owns the key
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.ownerToken = :owner, r.leaseExpiresAt = :leaseExpiresAt " +
+           "WHERE r.id = :id AND r.statusCode IS NULL AND (r.leaseExpiresAt IS NULL OR r.leaseExpiresAt < :now)")
+    int takeOver(@Param("id") Long id, @Param("owner") String owner,
+                 @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt, @Param("now") LocalDateTime now);
+    
+    /**
+     * Store the response of an in-progress key, provided the caller still owns it.
+     * 
+     * @return 1 if the response was stored
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody, " +
+           "r.leaseExpiresAt = NULL WHERE r.id = :id AND r.ownerToken = :owner AND r.statusCode IS NULL")
+    int complete(@Param("id") Long id, @Param("owner") String owner,
+                 @Param("statusCode") int statusCode, @Param("responseBody") String responseBody);
+    
+    /**
+     * Delete an in-progress key, provided the caller still owns it.
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.ownerToken = :owner AND r.statusCode IS NULL")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+    
+    /**
+     * Delete records that expired before the given time.
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -2,6 +2,7 @@ package com.ecommerce.repositories;
 
 import com.ecommerce.entities.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,4 +17,10 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
      * Find all items for an order.
      */
     List<OrderItem> findByOrderId(Long orderId);
+    
+    /**
+     * Total units sold per product, as (productId, quantity) pairs.
+     */
+    @Query("SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi GROUP BY oi.product.id")
+    List<Object[]> sumQuantityByProduct();
 }
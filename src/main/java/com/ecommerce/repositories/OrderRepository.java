@@ -36,4 +36,13 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     @Query("SELECT o FROM Order o LEFT JOIN FETCH o.items oi LEFT JOIN FETCH oi.product WHERE o.id = :orderId")
     Optional<Order> findByIdWithItems(@Param("orderId") Long orderId);
+    
+    /**
+     * Find the owner and version of an order and of every product in it, without loading entities.
+     * Returns one row of [userId, version, updatedAt, productId, productVersion, productUpdatedAt]
+     * per item, or none.
+     */
+    @Query("SELECT o.user.id, o.version, o.updatedAt, p.id, p.version, p.updatedAt FROM Order o " +
+           "LEFT JOIN o.items oi LEFT JOIN oi.product p WHERE o.id = :orderId")
+    List<Object[]> findVersionsById(@Param("orderId") Long orderId);
 }
@@ -0,0 +1,228 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.dto.ProductBulkUpdate;
+import com.ecommerce.dto.ProductDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Plain JDBC writes for bulk product operations and checkout stock updates.
+ * 
+ * Product ids use IDENTITY generation, which keeps Hibernate from batching inserts,
+ * so bulk paths write through JDBC batches here and run in the caller's transaction.
+ * Checkout stock updates are batched too, so a checkout costs one round trip for
+ * stock whatever the size of the cart.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductJdbcRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, description, price, stock_quantity, image_url, category_id, " +
+            "is_active, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String UPDATE_PRICE_STOCK_SQL =
+            "UPDATE products SET price = COALESCE(?, price), stock_quantity = COALESCE(?, stock_quantity), " +
+            "is_active = COALESCE(?, is_active), updated_at = ?, version = version + 1 WHERE id = ?";
+    
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity - ?, updated_at = ?, version = version + 1 " +
+            "WHERE id = ? AND stock_quantity - ? >= ? " +
+            "AND NOT EXISTS (SELECT 1 FROM product_stock_shards s WHERE s.product_id = products.id)";
+    
+    private static final String SET_STOCK_SQL =
+            "UPDATE products SET stock_quantity = ?, updated_at = ?, version = version + 1 " +
+            "WHERE id = ? AND stock_quantity <> ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Insert the products as one JDBC batch and set their generated ids.
+     */
+    public void insertAll(List<ProductDTO> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                for (ProductDTO product : products) {
+                    statement.setString(1, product.getName());
+                    statement.setString(2, product.getDescription());
+                    statement.setBigDecimal(3, product.getPrice());
+                    statement.setInt(4, product.getStockQuantity());
+                    statement.setString(5, product.getImageUrl());
+                    if (product.getCategoryId() != null) {
+                        statement.setLong(6, product.getCategoryId());
+                    } else {
+                        statement.setNull(6, Types.BIGINT);
+                    }
+                    statement.setBoolean(7, Boolean.TRUE.equals(product.getIsActive()));
+                    statement.setTimestamp(8, now);
+                    statement.setTimestamp(9, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                
+                // Keys come back in insertion order
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next() && index < products.size()) {
+                        products.get(index++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Lock the product rows in id order until the caller's transaction ends, the same
+     * order checkouts take them in.
+     */
+    public void lockProducts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(productIds.size(), "?"));
+        jdbcTemplate.queryForList("SELECT id FROM products WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE",
+                Long.class, productIds.toArray());
+    }
+    
+    /**
+     * Lock the product rows in id order until the caller's transaction ends and return
+     * their stock. Products that do not exist are left out.
+     */
+    public Map<Long, Integer> lockStock(Collection<Long> productIds) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stock;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(productIds.size(), "?"));
+        jdbcTemplate.query("SELECT id, stock_quantity FROM products WHERE id IN (" + placeholders + ") " +
+                        "ORDER BY id FOR UPDATE",
+                row -> {
+                    stock.put(row.getLong(1), row.getInt(2));
+                },
+                productIds.toArray());
+        return stock;
+    }
+    
+    /**
+     * Write the fields present in each update as one JDBC batch. Null fields keep the
+     * value in the row, so a price-only update never writes back a stock level.
+     */
+    public void updatePriceStockAndActive(List<ProductBulkUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPDATE_PRICE_STOCK_SQL, updates, updates.size(), (statement, update) -> {
+            if (update.getPrice() != null) {
+                statement.setBigDecimal(1, update.getPrice());
+            } else {
+                statement.setNull(1, Types.DECIMAL);
+            }
+            if (update.getStockQuantity() != null) {
+                statement.setInt(2, update.getStockQuantity());
+            } else {
+                statement.setNull(2, Types.INTEGER);
+            }
+            if (update.getActive() != null) {
+                statement.setBoolean(3, update.getActive());
+            } else {
+                statement.setNull(3, Types.BOOLEAN);
+            }
+            statement.setTimestamp(4, now);
+            statement.setLong(5, update.getId());
+        });
+    }
+    
+    /**
+     * Take stock from a product only if enough is left. The check and the write are
+     * one statement, so concurrent checkouts cannot both pass the check; the row
+     * stays locked until the caller's transaction ends.
+     * 
+     * @return false if the product does not exist, has less than quantity in stock
+     *         or keeps its stock in shards
+     */
+    public boolean decrementStock(Long productId, int quantity) {
+        return decrementStock(productId, quantity, 0);
+    }
+    
+    /**
+     * Take stock from a product only if enough is left over and above the quantity
+     * reserved for others, so that the write itself enforces their holds.
+     * 
+     * @return false if the product does not exist, has less than reserved plus quantity
+     *         in stock or keeps its stock in shards
+     */
+    public boolean decrementStock(Long productId, int quantity, int reserved) {
+        return jdbcTemplate.update(DECREMENT_STOCK_SQL,
+                quantity, Timestamp.valueOf(LocalDateTime.now()), productId, reserved, quantity) == 1;
+    }
+    
+    /**
+     * Take stock from several products as one JDBC batch, in id order, with the same
+     * check as {@link #decrementStock(Long, int, int)} for each of them.
+     * 
+     * @param reserved quantity reserved for others per product id; missing means none
+     * @return ids of the products whose stock was not taken, in id order
+     */
+    public List<Long> decrementStock(SortedMap<Long, Integer> quantities, Map<Long, Integer> reserved) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[][] counts = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, lines, lines.size(), (statement, line) -> {
+            statement.setInt(1, line.getValue());
+            statement.setTimestamp(2, now);
+            statement.setLong(3, line.getKey());
+            statement.setInt(4, reserved.getOrDefault(line.getKey(), 0));
+            statement.setInt(5, line.getValue());
+        });
+        List<Long> missed = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (counts[0][i] != 1) {
+                missed.add(lines.get(i).getKey());
+            }
+        }
+        return missed;
+    }
+    
+    /**
+     * Lock a product row and return its stock, or null if the product does not exist.
+     */
+    public Integer lockStock(Long productId) {
+        List<Integer> stock = jdbcTemplate.queryForList(
+                "SELECT stock_quantity FROM products WHERE id = ? FOR UPDATE", Integer.class, productId);
+        return stock.isEmpty() ? null : stock.get(0);
+    }
+    
+    /**
+     * Overwrite a product's stock.
+     * 
+     * @return false if the product already had that stock
+     */
+    public boolean setStock(Long productId, int quantity) {
+        return jdbcTemplate.update(SET_STOCK_SQL,
+                quantity, Timestamp.valueOf(LocalDateTime.now()), productId, quantity) == 1;
+    }
+}
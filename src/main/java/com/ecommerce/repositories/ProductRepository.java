@@ -1,5 +1,6 @@
 package com.ecommerce.repositories;
 
+import com.ecommerce.dto.ProductSummary;
 import com.ecommerce.entities.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -7,13 +8,15 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository for Product entity operations.
  */
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     
     /**
      * Find all active products.
@@ -35,6 +38,25 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      */
     List<Product> findByNameContainingIgnoreCase(String name);
     
+    /**
+     * Find a product by ID with its category in a single query.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id = :id")
+    Optional<Product> findWithCategoryById(@Param("id") Long id);
+    
+    /**
+     * Find products by ID with their category in a single query.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find product summaries by ID, projected directly from the joined rows.
+     */
+    @Query("SELECT new com.ecommerce.dto.ProductSummary(p.id, p.name, p.price, p.stockQuantity, p.imageUrl, " +
+           "c.id, c.name, p.isActive, p.createdAt) FROM Product p LEFT JOIN p.category c WHERE p.id IN :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
     /**
      * Find products within a price range.
      */
@@ -46,4 +68,19 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      */
     @Query("SELECT p FROM Product p WHERE p.stockQuantity <= :threshold AND p.isActive = true")
     List<Product> findLowStockProducts(@Param("threshold") int threshold);
+    
+    /**
+     * Find the version and modification time of a product and its category, without loading entities.
+     * Returns one row of [version, updatedAt, categoryId, categoryVersion, categoryUpdatedAt], or none.
+     */
+    @Query("SELECT p.version, p.updatedAt, c.id, c.version, c.updatedAt FROM Product p LEFT JOIN p.category c " +
+           "WHERE p.id = :id")
+    List<Object[]> findVersionById(@Param("id") Long id);
+    
+    /**
+     * Find the current stock of the products as [id, stockQuantity] rows, bypassing
+     * entities already loaded in the persistence context.
+     */
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,40 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.dto.ProductCursor;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductSortField;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.entities.Product;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Custom product queries that cannot be expressed as derived queries.
+ */
+public interface ProductRepositoryCustom {
+    
+    /**
+     * Fetch one keyset page of active products with their category.
+     * Rows strictly after {@code after} in (sort key, id) order are returned.
+     * A null {@code categoryIds} matches every category.
+     * Entities are loaded read-only; use this only when the full row is needed.
+     */
+    List<Product> findActivePage(Collection<Long> categoryIds, String nameQuery, ProductSortField sort,
+                                 boolean ascending, ProductCursor after, int limit);
+    
+    /**
+     * Same page as {@link #findActivePage}, projected into summaries by a single
+     * joined query without the description column or managed entities.
+     */
+    List<ProductSummary> findActiveSummaryPage(Collection<Long> categoryIds, String nameQuery, ProductSortField sort,
+                                               boolean ascending, ProductCursor after, int limit);
+    
+    /**
+     * Stream every active product in id order as detached DTOs, read through a
+     * forward-only cursor with the given fetch size. Must be consumed inside a
+     * read-only transaction and closed afterwards.
+     */
+    Stream<ProductDTO> streamActiveProducts(int fetchSize);
+}
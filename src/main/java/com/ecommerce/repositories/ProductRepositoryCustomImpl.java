@@ -0,0 +1,139 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.dto.ProductCursor;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductSortField;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.entities.Category;
+import com.ecommerce.entities.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Criteria-based implementation of {@link ProductRepositoryCustom}.
+ */
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+    
+    /** Not a backslash, which MySQL would also read as a string-literal escape in the ESCAPE clause. */
+    private static final char LIKE_ESCAPE = '!';
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<Product> findActivePage(Collection<Long> categoryIds, String nameQuery, ProductSortField sort,
+                                        boolean ascending, ProductCursor after, int limit) {
+        return findPage(Product.class, (cb, product) -> {
+            product.fetch("category", JoinType.LEFT);
+            return product;
+        }, categoryIds, nameQuery, sort, ascending, after, limit);
+    }
+    
+    @Override
+    public List<ProductSummary> findActiveSummaryPage(Collection<Long> categoryIds, String nameQuery,
+                                                      ProductSortField sort, boolean ascending,
+                                                      ProductCursor after, int limit) {
+        return findPage(ProductSummary.class, (cb, product) -> {
+            Join<Product, Category> category = product.join("category", JoinType.LEFT);
+            return cb.construct(ProductSummary.class,
+                    product.get("id"),
+                    product.get("name"),
+                    product.get("price"),
+                    product.get("stockQuantity"),
+                    product.get("imageUrl"),
+                    category.get("id"),
+                    category.get("name"),
+                    product.get("isActive"),
+                    product.get("createdAt"));
+        }, categoryIds, nameQuery, sort, ascending, after, limit);
+    }
+    
+    @Override
+    public Stream<ProductDTO> streamActiveProducts(int fetchSize) {
+        // A constructor projection keeps rows out of the persistence context, so memory stays flat
+        return entityManager.createQuery(
+                        "SELECT new com.ecommerce.dto.ProductDTO(p.id, p.name, p.description, p.price, " +
+                        "p.stockQuantity, p.imageUrl, c.id, c.name, p.isActive) " +
+                        "FROM Product p LEFT JOIN p.category c WHERE p.isActive = true ORDER BY p.id",
+                        ProductDTO.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> List<T> findPage(Class<T> resultType,
+                                 BiFunction<CriteriaBuilder, Root<Product>, Selection<? extends T>> selection,
+                                 Collection<Long> categoryIds, String nameQuery, ProductSortField sort,
+                                 boolean ascending, ProductCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(resultType);
+        Root<Product> product = query.from(Product.class);
+        query.select(selection.apply(cb, product));
+        
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(product.get("isActive")));
+        if (categoryIds != null) {
+            predicates.add(product.get("category").get("id").in(categoryIds));
+        }
+        if (nameQuery != null) {
+            predicates.add(cb.like(cb.lower(product.get("name")),
+                    "%" + escapeLike(nameQuery.toLowerCase()) + "%", LIKE_ESCAPE));
+        }
+        
+        Path<Long> id = product.get("id");
+        Path<Comparable> key = product.get(sort.getAttribute());
+        
+        // Seek past the last row: key beyond the cursor, or equal key with a later id
+        if (after != null) {
+            Predicate idBeyond = ascending
+                    ? cb.greaterThan(id, after.getLastId())
+                    : cb.lessThan(id, after.getLastId());
+            if (sort == ProductSortField.ID) {
+                predicates.add(idBeyond);
+            } else {
+                Comparable value = after.getSortValue();
+                Predicate keyBeyond = ascending ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+                predicates.add(cb.or(keyBeyond, cb.and(cb.equal(key, value), idBeyond)));
+            }
+        }
+        
+        List<Order> orders = new ArrayList<>();
+        if (sort != ProductSortField.ID) {
+            orders.add(ascending ? cb.asc(key) : cb.desc(key));
+        }
+        orders.add(ascending ? cb.asc(id) : cb.desc(id));
+        
+        query.where(predicates.toArray(new Predicate[0]))
+                .orderBy(orders);
+        
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
+    /**
+     * Escape LIKE wildcards so the search text only matches literally. With an explicit
+     * ESCAPE clause a backslash is an ordinary character on every supported database.
+     */
+    private static String escapeLike(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.List;
+
+/**
+ * Base repository for append-only log tables tailed by sequence number.
+ */
+@NoRepositoryBean
+public interface SequenceLogRepository<T> extends JpaRepository<T, Long> {
+    
+    /**
+     * Find entries after a sequence number, oldest first.
+     */
+    List<T> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+}
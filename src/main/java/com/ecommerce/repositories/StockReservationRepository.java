@@ -0,0 +1,61 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.entities.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for StockReservation entity operations.
+ */
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    
+    /**
+     * Find every hold of a user.
+     */
+    List<StockReservation> findByUserId(Long userId);
+    
+    /**
+     * Find and lock every hold of a user, so they cannot be removed by anyone else
+     * until the caller's transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.userId = :userId")
+    List<StockReservation> findByUserIdForUpdate(@Param("userId") Long userId);
+    
+    /**
+     * Delete holds by id with one statement.
+     */
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.id IN :ids")
+    int deleteHolds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Delete holds that expired before the given time.
+     */
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+    
+    /**
+     * Total held quantity per product as [productId, quantity] rows.
+     */
+    @Query("SELECT r.productId, SUM(r.quantity) FROM StockReservation r GROUP BY r.productId")
+    List<Object[]> sumQuantityByProduct();
+    
+    /**
+     * Held quantity per product for each of the given users, as [userId, productId, quantity] rows.
+     */
+    @Query("SELECT r.userId, r.productId, SUM(r.quantity) FROM StockReservation r " +
+           "WHERE r.userId IN :userIds GROUP BY r.userId, r.productId")
+    List<Object[]> sumQuantityByUserAndProduct(@Param("userIds") Collection<Long> userIds);
+}
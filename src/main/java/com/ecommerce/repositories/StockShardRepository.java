@@ -0,0 +1,146 @@
+package com.ecommerce.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC access to the stock shards of hot products.
+ * 
+ * Shards of a product are numbered from 0 and always locked in ascending shard
+ * order: a transaction holding a shard only ever goes on to higher ones.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockShardRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Find the shard count of every product in hot mode.
+     */
+    public Map<Long, Integer> findShardCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, COUNT(*) FROM product_stock_shards GROUP BY product_id",
+                row -> {
+                    counts.put(row.getLong(1), row.getInt(2));
+                });
+        return counts;
+    }
+    
+    /**
+     * Sum a product's shards without locking them, or null if the product is not in hot mode.
+     */
+    public Integer sumShards(Long productId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT SUM(quantity) FROM product_stock_shards WHERE product_id = ?", Integer.class, productId);
+    }
+    
+    /**
+     * Sum the shards of several products without locking them. Products not in hot
+     * mode are left out.
+     */
+    public Map<Long, Integer> sumShards(Collection<Long> productIds) {
+        Map<Long, Integer> sums = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return sums;
+        }
+        String placeholders = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        jdbcTemplate.query("SELECT product_id, SUM(quantity) FROM product_stock_shards " +
+                        "WHERE product_id IN (" + placeholders + ") GROUP BY product_id",
+                row -> {
+                    sums.put(row.getLong(1), row.getInt(2));
+                },
+                productIds.toArray());
+        return sums;
+    }
+    
+    /**
+     * Read a product's shard quantities in shard order without locking them, or an
+     * empty array if the product is not in hot mode.
+     */
+    public int[] readShards(Long productId) {
+        List<Integer> quantities = jdbcTemplate.queryForList(
+                "SELECT quantity FROM product_stock_shards WHERE product_id = ? ORDER BY shard",
+                Integer.class, productId);
+        return quantities.stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Take stock from one shard only if that shard has enough left. The shard stays
+     * locked even when it has too little.
+     */
+    public boolean decrementShard(Long productId, int shard, int quantity) {
+        return jdbcTemplate.update(
+                "UPDATE product_stock_shards SET quantity = quantity - ? " +
+                "WHERE product_id = ? AND shard = ? AND quantity >= ?",
+                quantity, productId, shard, quantity) == 1;
+    }
+    
+    /**
+     * Lock every shard of a product in shard order and return their quantities,
+     * or an empty array if the product is not in hot mode.
+     */
+    public int[] lockShards(Long productId) {
+        return lockShards(productId, 0);
+    }
+    
+    /**
+     * Lock a product's shards numbered from fromShard up, in shard order, and return
+     * their quantities.
+     */
+    public int[] lockShards(Long productId, int fromShard) {
+        List<Integer> quantities = jdbcTemplate.queryForList(
+                "SELECT quantity FROM product_stock_shards WHERE product_id = ? AND shard >= ? " +
+                "ORDER BY shard FOR UPDATE",
+                Integer.class, productId, fromShard);
+        return quantities.stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Overwrite the quantities of a product's existing shards.
+     */
+    public void updateShards(Long productId, int[] quantities) {
+        updateShards(productId, 0, quantities);
+    }
+    
+    /**
+     * Overwrite the quantities of a product's shards numbered from fromShard up.
+     */
+    public void updateShards(Long productId, int fromShard, int[] quantities) {
+        jdbcTemplate.batchUpdate(
+                "UPDATE product_stock_shards SET quantity = ? WHERE product_id = ? AND shard = ?",
+                shardArguments(productId, fromShard, quantities));
+    }
+    
+    /**
+     * Create the shards of a product.
+     */
+    public void insertShards(Long productId, int[] quantities) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO product_stock_shards (quantity, product_id, shard) VALUES (?, ?, ?)",
+                shardArguments(productId, 0, quantities));
+    }
+    
+    /**
+     * Delete every shard of a product, leaving hot mode.
+     */
+    public void deleteShards(Long productId) {
+        jdbcTemplate.update("DELETE FROM product_stock_shards WHERE product_id = ?", productId);
+    }
+    
+    private static List<Object[]> shardArguments(Long productId, int fromShard, int[] quantities) {
+        List<Object[]> arguments = new ArrayList<>(quantities.length);
+        for (int i = 0; i < quantities.length; i++) {
+            arguments.add(new Object[] {quantities[i], productId, fromShard + i});
+        }
+        return arguments;
+    }
+}
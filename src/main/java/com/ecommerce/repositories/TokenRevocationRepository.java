@@ -0,0 +1,35 @@
+package com.ecommerce.repositories;
+
+import com.ecommerce.entities.TokenRevocation;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for TokenRevocation entity operations.
+ */
+@Repository
+public interface TokenRevocationRepository extends SequenceLogRepository<TokenRevocation> {
+    
+    /**
+     * Find the entries that still cover unexpired tokens.
+     */
+    List<TokenRevocation> findByExpiresAtAfter(LocalDateTime now);
+    
+    /**
+     * Find the latest sequence number, or null if the log is empty.
+     */
+    @Query("SELECT MAX(r.id) FROM TokenRevocation r")
+    Long findMaxId();
+    
+    /**
+     * Delete entries whose tokens have all expired.
+     */
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.expiresAt < :cutoff")
+    int deleteExpired(@Param("cutoff") LocalDateTime cutoff);
+}
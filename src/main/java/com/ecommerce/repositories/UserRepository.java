@@ -1,7 +1,10 @@
 package com.ecommerce.repositories;
 
+import com.ecommerce.entities.Role;
 import com.ecommerce.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -17,6 +20,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Optional<User> findByEmail(String email);
     
+    /**
+     * Find a user's role without loading the user.
+     */
+    @Query("SELECT u.role FROM User u WHERE u.id = :id")
+    Optional<Role> findRoleById(@Param("id") Long id);
+    
     /**
      * Check if a user exists with the given email.
      */
@@ -0,0 +1,61 @@
+package com.ecommerce.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of document ordinals and term frequencies backed by primitive arrays.
+ */
+final class PostingList {
+    
+    private int[] docs = new int[4];
+    private int[] freqs = new int[4];
+    private int size;
+    
+    int size() {
+        return size;
+    }
+    
+    int doc(int index) {
+        return docs[index];
+    }
+    
+    int freq(int index) {
+        return freqs[index];
+    }
+    
+    /**
+     * Insert or replace the posting for a document, keeping ordinals sorted.
+     * New products mostly receive increasing ordinals, so this is usually an append;
+     * a reused ordinal is inserted in place.
+     */
+    void put(int doc, int freq) {
+        int pos = size > 0 && docs[size - 1] < doc ? -(size + 1) : Arrays.binarySearch(docs, 0, size, doc);
+        if (pos >= 0) {
+            freqs[pos] = freq;
+            return;
+        }
+        pos = -pos - 1;
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            freqs = Arrays.copyOf(freqs, size * 2);
+        }
+        System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+        System.arraycopy(freqs, pos, freqs, pos + 1, size - pos);
+        docs[pos] = doc;
+        freqs[pos] = freq;
+        size++;
+    }
+    
+    /**
+     * Remove the posting for a document if present.
+     */
+    void remove(int doc) {
+        int pos = Arrays.binarySearch(docs, 0, size, doc);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+        System.arraycopy(freqs, pos + 1, freqs, pos, size - pos - 1);
+        size--;
+    }
+}
@@ -0,0 +1,443 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.CategoryDTO;
+import com.ecommerce.dto.ProductCursor;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductFacetResult;
+import com.ecommerce.dto.ProductSortField;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.entities.Category;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.repositories.ProductRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Bitset facet index over active products, keyed by a dense product ordinal.
+ * 
+ * Keeps one bitset per category plus active and in-stock flags, and per-ordinal
+ * price cents and price band. A filter and all of its facet counts are answered
+ * in a single pass over the active bitset: each facet is counted with every
+ * filter except its own, and category counts roll up to ancestor categories.
+ * A full rebuild loads a new index without holding the lock, replays the changes
+ * that arrived meanwhile and then swaps it in, so queries keep the old index
+ * until the new one is complete.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductFacetIndex {
+    
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    
+    @Value("${catalog.facets.price-bands:10,25,50,100,250,500,1000}")
+    private List<BigDecimal> priceBandEdges;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "facet-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /** Index queries read; replaced whole by a rebuild. Guarded by lock. */
+    private Index index = new Index();
+    
+    /** Changes applied while a rebuild is loading, to replay on the new index. Guarded by lock. */
+    private List<Consumer<Index>> changesDuringRebuild;
+    
+    /**
+     * Outcome of a filter query: one page of matching ids plus facet counts.
+     */
+    @Getter
+    public static class Result {
+        private final List<Long> productIds = new ArrayList<>();
+        private boolean hasMore;
+        private int total;
+        private int inStockCount;
+        private final List<ProductFacetResult.CategoryFacet> categories = new ArrayList<>();
+        private final List<ProductFacetResult.PriceBandFacet> priceBands = new ArrayList<>();
+    }
+    
+    /**
+     * Load categories and active products once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+    }
+    
+    /**
+     * Load a new index from the database and swap it in.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Index built = new Index();
+        try {
+            for (Category category : categoryRepository.findAll()) {
+                built.putCategory(category.getId(), category.getName(),
+                        category.getParent() != null ? category.getParent().getId() : null);
+            }
+            ProductCursor after = null;
+            List<ProductSummary> batch;
+            do {
+                batch = productRepository.findActiveSummaryPage(null, null, ProductSortField.ID, true, after, REBUILD_BATCH_SIZE);
+                for (ProductSummary product : batch) {
+                    built.putProduct(product.getId(), product.getPrice(), product.getStockQuantity(),
+                            product.getCategoryId(), true);
+                }
+                if (!batch.isEmpty()) {
+                    after = ProductCursor.after(batch.get(batch.size() - 1), ProductSortField.ID, true);
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(built));
+            changesDuringRebuild = null;
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product facet index built with {} products and {} categories",
+                built.productOrdinals.size(), built.categoryIds.size());
+    }
+    
+    /**
+     * Apply a committed product change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        ProductDTO product = event.getProduct();
+        apply(target -> target.putProduct(product.getId(), product.getPrice(), product.getStockQuantity(),
+                product.getCategoryId(), Boolean.TRUE.equals(product.getIsActive())));
+    }
+    
+    /**
+     * Apply a committed bulk write under a single lock acquisition.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        apply(target -> {
+            for (ProductDTO product : event.getProducts()) {
+                target.putProduct(product.getId(), product.getPrice(), product.getStockQuantity(),
+                        product.getCategoryId(), Boolean.TRUE.equals(product.getIsActive()));
+            }
+        });
+    }
+    
+    /**
+     * Apply a committed category change. Deleting a category cascades to its
+     * subcategories and products, so the whole index is rebuilt in the background.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            rebuilder.execute(this::rebuild);
+            return;
+        }
+        CategoryDTO category = event.getCategory();
+        apply(target -> target.putCategory(category.getId(), category.getName(), category.getParentId()));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+    
+    /**
+     * Filter active products and count facets in one pass.
+     * 
+     * @param categoryId  restrict to this category and its descendants, or null
+     * @param minPrice    inclusive lower price bound, or null
+     * @param maxPrice    inclusive upper price bound, or null
+     * @param inStockOnly restrict to products with stock
+     * @param afterId     return only ids greater than this, or null
+     * @param limit       maximum ids to return
+     */
+    public Result query(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                        boolean inStockOnly, Long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.query(categoryId, minPrice, maxPrice, inStockOnly, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Apply a change to the live index, and keep it for the new one if a rebuild is loading.
+     */
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private int bandOf(long cents) {
+        for (int band = 0; band < priceBandEdges.size(); band++) {
+            if (cents < toCents(priceBandEdges.get(band))) {
+                return band;
+            }
+        }
+        return priceBandEdges.size();
+    }
+    
+    private static long toCents(BigDecimal price) {
+        return price.movePointRight(2).longValue();
+    }
+    
+    /**
+     * One generation of the index. Not thread-safe; the outer lock guards the live one.
+     */
+    private final class Index {
+        
+        // Categories, by dense category ordinal
+        private final Map<Long, Integer> categoryOrdinals = new HashMap<>();
+        private final List<Long> categoryIds = new ArrayList<>();
+        private final List<String> categoryNames = new ArrayList<>();
+        private final List<Long> categoryParentIds = new ArrayList<>();
+        private final List<BitSet> categoryBits = new ArrayList<>();
+        
+        // Products, by dense product ordinal
+        private final Map<Long, Integer> productOrdinals = new HashMap<>();
+        private long[] productIds = new long[1024];
+        private long[] priceCents = new long[1024];
+        private byte[] priceBands = new byte[1024];
+        private int[] productCategories = new int[1024];
+        private final BitSet active = new BitSet();
+        private final BitSet inStock = new BitSet();
+        private int nextOrdinal;
+        
+        private Result query(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                             boolean inStockOnly, Long afterId, int limit) {
+            long minCents = minPrice != null ? toCents(minPrice) : Long.MIN_VALUE;
+            long maxCents = maxPrice != null ? toCents(maxPrice) : Long.MAX_VALUE;
+            long afterProductId = afterId != null ? afterId : Long.MIN_VALUE;
+            Result result = new Result();
+            
+            BitSet categoryMask = categoryId != null ? subtreeMask(categoryId) : null;
+            int[] categoryCounts = new int[categoryIds.size()];
+            int[] bandCounts = new int[priceBandEdges.size() + 1];
+            // Max-heap holding the smallest matching ids past the cursor
+            PriorityQueue<Long> page = new PriorityQueue<>(limit + 2, Comparator.reverseOrder());
+            
+            for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+                boolean categoryMatch = categoryMask == null || categoryMask.get(i);
+                boolean priceMatch = priceCents[i] >= minCents && priceCents[i] <= maxCents;
+                boolean hasStock = inStock.get(i);
+                boolean stockMatch = !inStockOnly || hasStock;
+                
+                if (priceMatch && stockMatch && productCategories[i] >= 0) {
+                    categoryCounts[productCategories[i]]++;
+                }
+                if (categoryMatch && stockMatch) {
+                    bandCounts[priceBands[i]]++;
+                }
+                if (categoryMatch && priceMatch) {
+                    if (hasStock) {
+                        result.inStockCount++;
+                    }
+                    if (stockMatch) {
+                        result.total++;
+                        if (productIds[i] > afterProductId) {
+                            page.offer(productIds[i]);
+                            if (page.size() > limit + 1) {
+                                page.poll();
+                            }
+                        }
+                    }
+                }
+            }
+            
+            result.hasMore = page.size() > limit;
+            if (result.hasMore) {
+                page.poll();
+            }
+            result.productIds.addAll(page);
+            Collections.sort(result.productIds);
+            
+            addCategoryFacets(result, categoryCounts);
+            addPriceBandFacets(result, bandCounts);
+            return result;
+        }
+        
+        private void addCategoryFacets(Result result, int[] directCounts) {
+            // Roll each category's direct count up to all of its ancestors
+            int[] subtreeCounts = new int[directCounts.length];
+            for (int c = 0; c < directCounts.length; c++) {
+                if (directCounts[c] == 0) {
+                    continue;
+                }
+                int node = c;
+                int depth = 0;
+                while (node >= 0 && depth++ <= directCounts.length) {
+                    subtreeCounts[node] += directCounts[c];
+                    node = parentOrdinal(node);
+                }
+            }
+            for (int c = 0; c < subtreeCounts.length; c++) {
+                if (subtreeCounts[c] > 0) {
+                    result.categories.add(ProductFacetResult.CategoryFacet.builder()
+                            .categoryId(categoryIds.get(c))
+                            .categoryName(categoryNames.get(c))
+                            .count(subtreeCounts[c])
+                            .build());
+                }
+            }
+        }
+        
+        private void addPriceBandFacets(Result result, int[] bandCounts) {
+            for (int band = 0; band < bandCounts.length; band++) {
+                result.priceBands.add(ProductFacetResult.PriceBandFacet.builder()
+                        .minPrice(band == 0 ? BigDecimal.ZERO : priceBandEdges.get(band - 1))
+                        .maxPrice(band < priceBandEdges.size() ? priceBandEdges.get(band) : null)
+                        .count(bandCounts[band])
+                        .build());
+            }
+        }
+        
+        /**
+         * Union of the bitsets of a category and all of its descendants.
+         */
+        private BitSet subtreeMask(Long categoryId) {
+            BitSet mask = new BitSet();
+            Integer root = categoryOrdinals.get(categoryId);
+            if (root == null) {
+                return mask;
+            }
+            for (int c = 0; c < categoryIds.size(); c++) {
+                if (isWithin(c, root)) {
+                    mask.or(categoryBits.get(c));
+                }
+            }
+            return mask;
+        }
+        
+        private boolean isWithin(int category, int root) {
+            int node = category;
+            int depth = 0;
+            while (node >= 0 && depth++ <= categoryIds.size()) {
+                if (node == root) {
+                    return true;
+                }
+                node = parentOrdinal(node);
+            }
+            return false;
+        }
+        
+        private int parentOrdinal(int category) {
+            Long parentId = categoryParentIds.get(category);
+            Integer parent = parentId != null ? categoryOrdinals.get(parentId) : null;
+            return parent != null ? parent : -1;
+        }
+        
+        private int categoryOrdinal(Long categoryId) {
+            Integer ordinal = categoryOrdinals.get(categoryId);
+            if (ordinal == null) {
+                // Products may reference a category created after the last rebuild
+                ordinal = putCategory(categoryId, null, null);
+            }
+            return ordinal;
+        }
+        
+        private int putCategory(Long id, String name, Long parentId) {
+            Integer ordinal = categoryOrdinals.get(id);
+            if (ordinal != null) {
+                if (name != null) {
+                    categoryNames.set(ordinal, name);
+                    categoryParentIds.set(ordinal, parentId);
+                }
+                return ordinal;
+            }
+            ordinal = categoryIds.size();
+            categoryOrdinals.put(id, ordinal);
+            categoryIds.add(id);
+            categoryNames.add(name);
+            categoryParentIds.add(parentId);
+            categoryBits.add(new BitSet());
+            return ordinal;
+        }
+        
+        private void putProduct(Long id, BigDecimal price, Integer stockQuantity, Long categoryId, boolean isActive) {
+            Integer existing = productOrdinals.get(id);
+            if (existing == null && !isActive) {
+                return;
+            }
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+                if (productCategories[ordinal] >= 0) {
+                    categoryBits.get(productCategories[ordinal]).clear(ordinal);
+                }
+            } else {
+                ordinal = nextOrdinal++;
+                ensureCapacity(ordinal);
+                productOrdinals.put(id, ordinal);
+                productIds[ordinal] = id;
+            }
+            
+            long cents = toCents(price);
+            priceCents[ordinal] = cents;
+            priceBands[ordinal] = (byte) bandOf(cents);
+            productCategories[ordinal] = categoryId != null ? categoryOrdinal(categoryId) : -1;
+            if (productCategories[ordinal] >= 0) {
+                categoryBits.get(productCategories[ordinal]).set(ordinal);
+            }
+            active.set(ordinal, isActive);
+            inStock.set(ordinal, stockQuantity != null && stockQuantity > 0);
+        }
+        
+        private void ensureCapacity(int ordinal) {
+            if (ordinal < productIds.length) {
+                return;
+            }
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            priceBands = Arrays.copyOf(priceBands, capacity);
+            productCategories = Arrays.copyOf(productCategories, capacity);
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.ProductCursor;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductSortField;
+import com.ecommerce.entities.Product;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory inverted index over active product names and descriptions.
+ * 
+ * Built from the products table on startup and patched after every committed
+ * product change. Terms map to primitive posting lists keyed by a dense product
+ * ordinal, and ordinals freed by removed products are reused; queries AND their
+ * tokens, expand the last token as a prefix and rank matches with BM25. A full
+ * rebuild loads a new index without holding the lock, replays the changes that
+ * arrived meanwhile and then swaps it in, so neither startup nor a category
+ * delete can lose a concurrent product change.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+    
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NAME_BOOST = 3;
+    private static final float PREFIX_WEIGHT = 0.8f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    
+    private final ProductRepository productRepository;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /** Index searches read; replaced whole by a rebuild. Guarded by lock. */
+    private Index index = new Index();
+    
+    /** Changes applied while a rebuild is loading, to replay on the new index. Guarded by lock. */
+    private List<Consumer<Index>> changesDuringRebuild;
+    
+    /**
+     * A ranked search result.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Hit {
+        private final Long productId;
+        private final float score;
+    }
+    
+    /**
+     * Load every active product into the index once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+    }
+    
+    /**
+     * Load a new index from the database and swap it in.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Index built = new Index();
+        try {
+            ProductCursor after = null;
+            List<Product> batch;
+            do {
+                batch = productRepository.findActivePage(null, null, ProductSortField.ID, true, after, REBUILD_BATCH_SIZE);
+                for (Product product : batch) {
+                    built.put(product.getId(), new Document(product.getName(), product.getDescription()));
+                }
+                if (!batch.isEmpty()) {
+                    after = ProductCursor.after(batch.get(batch.size() - 1), ProductSortField.ID, true);
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(built));
+            changesDuringRebuild = null;
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index built with {} products and {} terms", built.liveDocs, built.terms.size());
+    }
+    
+    /**
+     * Apply a committed product change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        ProductDTO product = event.getProduct();
+        if (Boolean.TRUE.equals(product.getIsActive())) {
+            index(product.getId(), product.getName(), product.getDescription());
+        } else {
+            remove(product.getId());
+        }
+    }
+    
+    /**
+     * Apply a committed bulk write under a single lock acquisition.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        Map<Long, Document> changed = new LinkedHashMap<>();
+        for (ProductDTO product : event.getProducts()) {
+            changed.put(product.getId(), Boolean.TRUE.equals(product.getIsActive())
+                    ? new Document(product.getName(), product.getDescription()) : null);
+        }
+        apply(target -> changed.forEach((productId, document) -> {
+            if (document != null) {
+                target.put(productId, document);
+            } else {
+                target.remove(productId);
+            }
+        }));
+    }
+    
+    /**
+     * Apply a committed category change. Deleting a category cascades to its
+     * subcategories and products, so the whole index is rebuilt in the background.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            rebuilder.execute(this::rebuild);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+    
+    /**
+     * Add or replace a product in the index.
+     */
+    public void index(Long productId, String name, String description) {
+        Document document = new Document(name, description);
+        apply(target -> target.put(productId, document));
+    }
+    
+    /**
+     * Remove a product from the index.
+     */
+    public void remove(Long productId) {
+        apply(target -> target.remove(productId));
+    }
+    
+    /**
+     * Rank products matching every query token, best first (score desc, id asc).
+     * When {@code afterScore} and {@code afterId} are given, only hits ranked
+     * strictly after that position are returned.
+     */
+    public List<Hit> search(String query, Float afterScore, Long afterId, int limit) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        lock.readLock().lock();
+        try {
+            return index.search(tokens, afterScore, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Number of products currently indexed.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Number of distinct terms in the dictionary.
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return index.terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Apply a change to the live index, and keep it for the new one if a rebuild is loading.
+     */
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * A product's term frequencies, tokenized outside the lock.
+     */
+    private static final class Document {
+        
+        final Map<String, Integer> freqs = new HashMap<>();
+        final int length;
+        
+        Document(String name, String description) {
+            List<String> nameTokens = SearchTokenizer.tokenize(name);
+            List<String> descriptionTokens = SearchTokenizer.tokenize(description);
+            for (String token : nameTokens) {
+                freqs.merge(token, NAME_BOOST, Integer::sum);
+            }
+            for (String token : descriptionTokens) {
+                freqs.merge(token, 1, Integer::sum);
+            }
+            length = nameTokens.size() + descriptionTokens.size();
+        }
+    }
+    
+    /**
+     * One generation of the index. Not thread-safe; the outer lock guards the live one.
+     */
+    private static final class Index {
+        
+        private final TreeMap<String, PostingList> terms = new TreeMap<>();
+        private final Map<Long, Integer> ordinalByProductId = new HashMap<>();
+        private long[] productIds = new long[1024];
+        private int[] docLengths = new int[1024];
+        private String[][] docTerms = new String[1024][];
+        private int[] freeOrdinals = new int[16];
+        private int freeCount;
+        private int nextOrdinal;
+        private int liveDocs;
+        private long totalLength;
+        
+        private void put(Long productId, Document document) {
+            Integer existing = ordinalByProductId.get(productId);
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+                removePostings(ordinal);
+            } else {
+                ordinal = freeCount > 0 ? freeOrdinals[--freeCount] : nextOrdinal++;
+                ensureCapacity(ordinal);
+                ordinalByProductId.put(productId, ordinal);
+                productIds[ordinal] = productId;
+                liveDocs++;
+            }
+            
+            String[] indexedTerms = new String[document.freqs.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : document.freqs.entrySet()) {
+                String term = entry.getKey();
+                Map.Entry<String, PostingList> posting = terms.ceilingEntry(term);
+                if (posting == null || !posting.getKey().equals(term)) {
+                    terms.put(term, new PostingList());
+                    posting = terms.ceilingEntry(term);
+                }
+                posting.getValue().put(ordinal, entry.getValue());
+                // Keep the dictionary's key instance so documents share term strings
+                indexedTerms[i++] = posting.getKey();
+            }
+            
+            docTerms[ordinal] = indexedTerms;
+            docLengths[ordinal] = document.length;
+            totalLength += document.length;
+        }
+        
+        private void remove(Long productId) {
+            Integer ordinal = ordinalByProductId.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            removePostings(ordinal);
+            productIds[ordinal] = 0;
+            liveDocs--;
+            if (freeCount == freeOrdinals.length) {
+                freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+            }
+            freeOrdinals[freeCount++] = ordinal;
+        }
+        
+        private List<Hit> search(List<String> tokens, Float afterScore, Long afterId, int limit) {
+            if (liveDocs == 0) {
+                return Collections.emptyList();
+            }
+            float avgLength = Math.max(1f, (float) totalLength / liveDocs);
+            
+            Matches result = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean prefix = i == tokens.size() - 1;
+                Matches matches = matchToken(tokens.get(i), prefix, avgLength);
+                result = result == null ? matches : result.intersect(matches);
+                if (result.size == 0) {
+                    return Collections.emptyList();
+                }
+            }
+            return topHits(result, afterScore, afterId, limit);
+        }
+        
+        private Matches matchToken(String token, boolean prefix, float avgLength) {
+            Matches matches = Matches.EMPTY;
+            if (!prefix) {
+                PostingList postings = terms.get(token);
+                return postings != null ? score(postings, 1f, avgLength) : matches;
+            }
+            
+            int expansions = 0;
+            for (Map.Entry<String, PostingList> entry
+                    : terms.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                float weight = entry.getKey().equals(token) ? 1f : PREFIX_WEIGHT;
+                matches = matches.union(score(entry.getValue(), weight, avgLength));
+                if (++expansions >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+            }
+            return matches;
+        }
+        
+        private Matches score(PostingList postings, float weight, float avgLength) {
+            int df = postings.size();
+            float idf = (float) Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+            Matches matches = new Matches(df);
+            for (int i = 0; i < df; i++) {
+                int doc = postings.doc(i);
+                int tf = postings.freq(i);
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                matches.docs[i] = doc;
+                matches.scores[i] = weight * idf * tf * (K1 + 1) / (tf + norm);
+            }
+            matches.size = df;
+            return matches;
+        }
+        
+        private List<Hit> topHits(Matches matches, Float afterScore, Long afterId, int limit) {
+            // Min-heap whose head is the worst hit kept so far
+            PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, (a, b) -> compareRank(matches, b, a));
+            for (int i = 0; i < matches.size; i++) {
+                if (afterScore != null) {
+                    float score = matches.scores[i];
+                    long id = productIds[matches.docs[i]];
+                    if (score > afterScore || (score == afterScore && id <= afterId)) {
+                        continue;
+                    }
+                }
+                heap.offer(i);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+            
+            List<Hit> hits = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                int i = heap.poll();
+                hits.add(new Hit(productIds[matches.docs[i]], matches.scores[i]));
+            }
+            Collections.reverse(hits);
+            return hits;
+        }
+        
+        /**
+         * Negative when {@code a} ranks before {@code b}.
+         */
+        private int compareRank(Matches matches, int a, int b) {
+            int byScore = Float.compare(matches.scores[b], matches.scores[a]);
+            if (byScore != 0) {
+                return byScore;
+            }
+            return Long.compare(productIds[matches.docs[a]], productIds[matches.docs[b]]);
+        }
+        
+        private void removePostings(int ordinal) {
+            String[] indexedTerms = docTerms[ordinal];
+            if (indexedTerms == null) {
+                return;
+            }
+            for (String term : indexedTerms) {
+                PostingList postings = terms.get(term);
+                if (postings != null) {
+                    postings.remove(ordinal);
+                    if (postings.size() == 0) {
+                        terms.remove(term);
+                    }
+                }
+            }
+            totalLength -= docLengths[ordinal];
+            docTerms[ordinal] = null;
+            docLengths[ordinal] = 0;
+        }
+        
+        private void ensureCapacity(int ordinal) {
+            if (ordinal < productIds.length) {
+                return;
+            }
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+        }
+    }
+    
+    /**
+     * Scored document ordinals, sorted by ordinal.
+     */
+    private static final class Matches {
+        
+        static final Matches EMPTY = new Matches(0);
+        
+        final int[] docs;
+        final float[] scores;
+        int size;
+        
+        Matches(int capacity) {
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+        
+        /**
+         * Documents in either set; a document matching several expansions keeps its best score.
+         */
+        Matches union(Matches other) {
+            if (size == 0) {
+                return other;
+            }
+            Matches merged = new Matches(size + other.size);
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size || j < other.size) {
+                if (j >= other.size || (i < size && docs[i] < other.docs[j])) {
+                    merged.docs[n] = docs[i];
+                    merged.scores[n++] = scores[i++];
+                } else if (i >= size || other.docs[j] < docs[i]) {
+                    merged.docs[n] = other.docs[j];
+                    merged.scores[n++] = other.scores[j++];
+                } else {
+                    merged.docs[n] = docs[i];
+                    merged.scores[n++] = Math.max(scores[i++], other.scores[j++]);
+                }
+            }
+            merged.size = n;
+            return merged;
+        }
+        
+        /**
+         * Documents in both sets, with scores summed.
+         */
+        Matches intersect(Matches other) {
+            Matches merged = new Matches(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (other.docs[j] < docs[i]) {
+                    j++;
+                } else {
+                    merged.docs[n] = docs[i];
+                    merged.scores[n++] = scores[i++] + other.scores[j++];
+                }
+            }
+            merged.size = n;
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.CategoryDTO;
+import com.ecommerce.dto.ProductCursor;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductSortField;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.dto.SuggestionDTO;
+import com.ecommerce.entities.Category;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.events.ProductsSoldEvent;
+import com.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.repositories.OrderItemRepository;
+import com.ecommerce.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typeahead index over product and category names, weighted by popularity.
+ * 
+ * Every word start of a name becomes a sorted key, so "gal" completes
+ * "Samsung Galaxy S24". A key is an offset into the name it was cut from, not a
+ * copy of the rest of it. A lookup binary-searches the prefix range and pulls the
+ * top-k weights out of it with a max segment tree, costing O(k log n) regardless
+ * of how many names share the prefix. The sorted keys are rebuilt in the background
+ * shortly after names, categories or the set of active products change. Sales only
+ * patch the weights of the product sold in place: checkouts on this node add their
+ * units as they commit, and the totals over all nodes are reloaded hourly.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SuggestionIndex {
+    
+    public static final String TYPE_PRODUCT = "PRODUCT";
+    public static final String TYPE_CATEGORY = "CATEGORY";
+    
+    private static final long REBUILD_DELAY_MS = 500;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final OrderItemRepository orderItemRepository;
+    
+    private final Map<Long, Source> products = new ConcurrentHashMap<>();
+    private final Map<Long, Source> categories = new ConcurrentHashMap<>();
+    /** Units sold per product id; only changed on the rebuild thread once the index is loaded. */
+    private volatile Map<Long, Long> unitsSold = new HashMap<>();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suggestion-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private volatile Snapshot snapshot = Snapshot.build(Collections.emptyList(), Collections.emptyMap());
+    
+    /**
+     * A suggestable name.
+     */
+    @AllArgsConstructor
+    private static final class Source {
+        final String name;
+        final Long categoryId;
+        
+        boolean sameAs(Source other) {
+            return other != null && name.equals(other.name) && Objects.equals(categoryId, other.categoryId);
+        }
+    }
+    
+    /**
+     * Load names and sales counts once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        unitsSold = loadSales();
+        
+        categories.clear();
+        for (Category category : categoryRepository.findAll()) {
+            categories.put(category.getId(), new Source(category.getName(), null));
+        }
+        
+        products.clear();
+        ProductCursor after = null;
+        List<ProductSummary> batch;
+        do {
+            batch = productRepository.findActiveSummaryPage(null, null, ProductSortField.ID, true, after, REBUILD_BATCH_SIZE);
+            for (ProductSummary product : batch) {
+                products.put(product.getId(), new Source(product.getName(), product.getCategoryId()));
+            }
+            if (!batch.isEmpty()) {
+                after = ProductCursor.after(batch.get(batch.size() - 1), ProductSortField.ID, true);
+            }
+        } while (batch.size() == REBUILD_BATCH_SIZE);
+        
+        rebuild();
+        log.info("Suggestion index built with {} products and {} categories", products.size(), categories.size());
+    }
+    
+    /**
+     * Apply a committed product change. Stock and price changes leave the index alone.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (putProduct(event.getProduct())) {
+            scheduleRebuild();
+        }
+    }
+    
+    /**
+     * Apply a committed bulk write with a single rebuild.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        boolean changed = false;
+        for (ProductDTO product : event.getProducts()) {
+            changed |= putProduct(product);
+        }
+        if (changed) {
+            scheduleRebuild();
+        }
+    }
+    
+    /**
+     * Add a committed checkout's units to the weights of the products sold.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsSold(ProductsSoldEvent event) {
+        rebuilder.execute(() -> event.getQuantities().forEach((productId, quantity) -> {
+            unitsSold.merge(productId, (long) quantity, Long::sum);
+            snapshot.addWeight(productId, quantity);
+        }));
+    }
+    
+    /**
+     * Apply a committed category change. Deletes cascade to subcategories and
+     * products, so they trigger a full reload.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            rebuilder.execute(this::reload);
+            return;
+        }
+        CategoryDTO category = event.getCategory();
+        Source source = new Source(category.getName(), null);
+        if (!source.sameAs(categories.put(category.getId(), source))) {
+            scheduleRebuild();
+        }
+    }
+    
+    /**
+     * Pick up the sales of other nodes, which only reach this one through the database.
+     */
+    @Scheduled(fixedDelayString = "${catalog.suggestions.sales-refresh-interval:3600000}",
+            initialDelayString = "${catalog.suggestions.sales-refresh-interval:3600000}")
+    public void refreshSales() {
+        Map<Long, Long> loaded = loadSales();
+        rebuilder.execute(() -> {
+            unitsSold = loaded;
+            rebuild();
+        });
+    }
+    
+    /**
+     * Top completions for a prefix, most popular first.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        return snapshot.top(key, limit);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+    
+    /**
+     * Record a product's name and category, or drop it once inactive.
+     * 
+     * @return whether the keys or the category weights change
+     */
+    private boolean putProduct(ProductDTO product) {
+        if (!Boolean.TRUE.equals(product.getIsActive())) {
+            return products.remove(product.getId()) != null;
+        }
+        Source source = new Source(product.getName(), product.getCategoryId());
+        return !source.sameAs(products.put(product.getId(), source));
+    }
+    
+    /**
+     * Coalesce bursts of changes into one rebuild.
+     */
+    private void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.schedule(() -> {
+                rebuildPending.set(false);
+                rebuild();
+            }, REBUILD_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Load the units sold per product, summed over all orders.
+     */
+    private Map<Long, Long> loadSales() {
+        Map<Long, Long> loaded = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantityByProduct()) {
+            loaded.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return loaded;
+    }
+    
+    private void rebuild() {
+        Map<Long, Long> sales = unitsSold;
+        Map<Long, Long> productsPerCategory = new HashMap<>();
+        List<Entry> entries = new ArrayList<>();
+        Map<Entry, Long> weights = new IdentityHashMap<>();
+        products.forEach((id, source) -> {
+            addEntries(entries, weights, TYPE_PRODUCT, id, source.name, 1 + sales.getOrDefault(id, 0L));
+            if (source.categoryId != null) {
+                productsPerCategory.merge(source.categoryId, 1L, Long::sum);
+            }
+        });
+        categories.forEach((id, source) -> addEntries(entries, weights, TYPE_CATEGORY, id, source.name,
+                1 + productsPerCategory.getOrDefault(id, 0L)));
+        snapshot = Snapshot.build(entries, weights);
+    }
+    
+    private static void addEntries(List<Entry> entries, Map<Entry, Long> weights, String type, Long id,
+                                   String name, long weight) {
+        String normalized = normalize(name);
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                Entry entry = new Entry(normalized, i, type, id, name);
+                entries.add(entry);
+                weights.put(entry, weight);
+            }
+        }
+    }
+    
+    private static String normalize(String text) {
+        return String.join(" ", SearchTokenizer.tokenize(text));
+    }
+    
+    /**
+     * One word start of a name: the key is {@code normalized} from {@code start} on,
+     * and every word start of a name shares the same normalized string.
+     */
+    @AllArgsConstructor
+    private static final class Entry {
+        final String normalized;
+        final int start;
+        final String type;
+        final Long id;
+        final String text;
+        
+        /**
+         * Compare this key with the one {@code otherText} holds from {@code otherStart} on.
+         */
+        int compareTo(String otherText, int otherStart) {
+            int length = normalized.length() - start;
+            int otherLength = otherText.length() - otherStart;
+            for (int i = 0, n = Math.min(length, otherLength); i < n; i++) {
+                char a = normalized.charAt(start + i);
+                char b = otherText.charAt(otherStart + i);
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return length - otherLength;
+        }
+    }
+    
+    /**
+     * Sorted keys with a max segment tree over their weights. The keys never change;
+     * the weights are patched in place, only ever from the rebuild thread. A lookup
+     * racing a patch may rank by a weight from just before it.
+     */
+    private static final class Snapshot {
+        
+        private final Entry[] entries;
+        private final long[] weights;
+        private final int leaves;
+        private final int[] tree;
+        /** Entry indexes of every product, for patching its weight. */
+        private final Map<Long, int[]> productEntries = new HashMap<>();
+        
+        private Snapshot(Entry[] entries, long[] weights) {
+            this.entries = entries;
+            this.weights = weights;
+            int size = 1;
+            while (size < entries.length) {
+                size <<= 1;
+            }
+            this.leaves = size;
+            this.tree = new int[2 * size];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < entries.length; i++) {
+                tree[size + i] = i;
+                if (TYPE_PRODUCT.equals(entries[i].type)) {
+                    int[] indexes = productEntries.get(entries[i].id);
+                    int[] grown = indexes == null ? new int[1] : Arrays.copyOf(indexes, indexes.length + 1);
+                    grown[grown.length - 1] = i;
+                    productEntries.put(entries[i].id, grown);
+                }
+            }
+            for (int node = size - 1; node > 0; node--) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+        
+        static Snapshot build(List<Entry> entries, Map<Entry, Long> weights) {
+            Entry[] sorted = entries.toArray(new Entry[0]);
+            Arrays.sort(sorted, (a, b) -> a.compareTo(b.normalized, b.start));
+            long[] sortedWeights = new long[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sortedWeights[i] = weights.get(sorted[i]);
+            }
+            return new Snapshot(sorted, sortedWeights);
+        }
+        
+        /**
+         * Add to the weight of every key of a product, then fix the maxima above them.
+         */
+        void addWeight(Long productId, long delta) {
+            int[] indexes = productEntries.get(productId);
+            if (indexes == null) {
+                return;
+            }
+            for (int index : indexes) {
+                weights[index] += delta;
+                for (int node = (leaves + index) >> 1; node > 0; node >>= 1) {
+                    tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+                }
+            }
+        }
+        
+        List<SuggestionDTO> top(String prefix, int limit) {
+            int lo = lowerBound(prefix);
+            int hi = lowerBound(prefix + Character.MAX_VALUE);
+            if (lo >= hi) {
+                return Collections.emptyList();
+            }
+            
+            // Best-first over sub-ranges: each popped range yields its maximum,
+            // then splits around it into two smaller ranges
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> better(a[2], b[2]) == a[2] ? -1 : 1);
+            ranges.add(new int[] {lo, hi, argMax(lo, hi)});
+            List<SuggestionDTO> results = new ArrayList<>(limit);
+            Set<String> seen = new HashSet<>();
+            while (!ranges.isEmpty() && results.size() < limit) {
+                int[] range = ranges.poll();
+                int best = range[2];
+                Entry entry = entries[best];
+                if (seen.add(entry.type + entry.id)) {
+                    results.add(SuggestionDTO.builder()
+                            .type(entry.type)
+                            .id(entry.id)
+                            .text(entry.text)
+                            .build());
+                }
+                if (range[0] < best) {
+                    ranges.add(new int[] {range[0], best, argMax(range[0], best)});
+                }
+                if (best + 1 < range[1]) {
+                    ranges.add(new int[] {best + 1, range[1], argMax(best + 1, range[1])});
+                }
+            }
+            return results;
+        }
+        
+        /**
+         * Index of the heaviest entry in [from, to).
+         */
+        private int argMax(int from, int to) {
+            int best = -1;
+            for (int l = from + leaves, r = to + leaves; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    best = better(best, tree[l++]);
+                }
+                if ((r & 1) == 1) {
+                    best = better(best, tree[--r]);
+                }
+            }
+            return best;
+        }
+        
+        /**
+         * The heavier of two entry indexes; ties go to the lower index, -1 means none.
+         */
+        private int better(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            if (b < 0) {
+                return a;
+            }
+            long wa = weights[a];
+            long wb = weights[b];
+            if (wa != wb) {
+                return wa > wb ? a : b;
+            }
+            return Math.min(a, b);
+        }
+        
+        private int lowerBound(String key) {
+            int lo = 0;
+            int hi = entries.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (entries[mid].compareTo(key, 0) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.security;
+
+import com.ecommerce.entities.Role;
+import com.ecommerce.entities.User;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Principal of a request authenticated by JWT, built from the token's claims
+ * without reading the users table.
+ */
+@Getter
+@RequiredArgsConstructor
+public class AuthenticatedUser implements Principal {
+    
+    private final Long id;
+    private final String email;
+    private final Role role;
+    
+    @Override
+    public String getName() {
+        return email;
+    }
+    
+    public List<GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+    
+    /**
+     * A User carrying only id, email and role. It can be passed to services and set
+     * on associations, but is not managed and has none of the other fields loaded.
+     */
+    public User toUser() {
+        return User.builder()
+                .id(id)
+                .email(email)
+                .role(role)
+                .build();
+    }
+}
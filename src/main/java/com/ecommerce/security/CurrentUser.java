@@ -0,0 +1,16 @@
+package com.ecommerce.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a controller parameter of type {@link com.ecommerce.entities.User} or
+ * {@link AuthenticatedUser} to the authenticated caller, as resolved from the JWT.
+ * The User only carries id, email and role; load the entity when more is needed.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -1,24 +1,35 @@
 package com.ecommerce.security;
 
+import com.ecommerce.entities.Role;
 import com.ecommerce.entities.User;
 import com.ecommerce.repositories.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collections;
 
 /**
- * Custom UserDetailsService implementation for loading user data.
+ * Custom UserDetailsService implementation for loading user data, and for storing
+ * re-encoded password hashes after a login with an outdated BCrypt cost.
  */
 @Service
-@RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     
     private final UserRepository userRepository;
+    private final Cache<Long, Role> userRoleCache;
+    
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Qualifier("userRoleCache") Cache<Long, Role> userRoleCache) {
+        this.userRepository = userRepository;
+        this.userRoleCache = userRoleCache;
+    }
     
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
@@ -32,6 +43,19 @@ public class CustomUserDetailsService implements UserDetailsService {
         );
     }
     
+    /**
+     * Store a password hash re-encoded at the current cost.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = loadUserEntityByEmail(userDetails.getUsername());
+        user.setPassword(newPassword);
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
+    
     /**
      * Load user entity by email.
      */
@@ -39,4 +63,22 @@ public class CustomUserDetailsService implements UserDetailsService {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
     }
+    
+    /**
+     * Load the principal for a token that carries only the email.
+     */
+    public AuthenticatedUser loadAuthenticatedUser(String email) {
+        User user = loadUserEntityByEmail(email);
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole());
+    }
+    
+    /**
+     * Whether a token's user still exists with the role the token claims. Answers
+     * from a short-lived cache, so a deleted or demoted user is locked out within its TTL.
+     */
+    public boolean isCurrent(AuthenticatedUser principal) {
+        Role role = userRoleCache.get(principal.getId(),
+                id -> userRepository.findRoleById(id).orElse(null));
+        return role == principal.getRole();
+    }
 }
@@ -5,9 +5,9 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -17,6 +17,14 @@ import java.io.IOException;
 
 /**
  * JWT authentication filter that validates tokens on every request.
+ * 
+ * The principal is built from the token's claims, so the common request reads
+ * nothing from the users table. Revoked tokens are rejected from the in-memory
+ * revocation set. With jwt.revocation-check.enabled, the claimed role is also
+ * checked against a short-lived cache of current roles.
+ * 
+ * The verified token is kept as the authentication's credentials, so logout can
+ * revoke the token it was called with.
  */
 @Component
 @RequiredArgsConstructor
@@ -24,6 +32,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+    
+    @Value("${jwt.revocation-check.enabled:false}")
+    private boolean revocationCheck;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -32,16 +44,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         try {
             String jwt = getJwtFromRequest(request);
+            VerifiedToken token = StringUtils.hasText(jwt) ? jwtUtil.verifyToken(jwt) : null;
+            AuthenticatedUser principal = token != null ? token.getUser() : null;
             
-            if (StringUtils.hasText(jwt) && jwtUtil.validateToken(jwt)) {
-                String email = jwtUtil.getEmailFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                
+            if (principal != null && principal.getId() == null) {
+                // Token issued before id and role claims were added
+                principal = userDetailsService.loadAuthenticatedUser(principal.getEmail());
+            } else if (principal != null && revocationCheck && !userDetailsService.isCurrent(principal)) {
+                principal = null;
+            }
+            if (principal != null && tokenRevocationService.isRevoked(token, principal.getId())) {
+                principal = null;
+            }
+            
+            if (principal != null) {
                 UsernamePasswordAuthenticationToken authentication = 
                         new UsernamePasswordAuthenticationToken(
-                                userDetails, 
-                                null, 
-                                userDetails.getAuthorities()
+                                principal, 
+                                token, 
+                                principal.getAuthorities()
                         );
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 
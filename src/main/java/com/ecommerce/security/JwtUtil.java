@@ -1,83 +1,142 @@
 package com.ecommerce.security;
 
+import com.ecommerce.entities.Role;
+import com.ecommerce.entities.User;
+import com.github.benmanes.caffeine.cache.Cache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 /**
  * Utility class for JWT token operations.
+ * 
+ * Tokens carry the user's id and role next to the email, so a request can be
+ * authenticated from the token alone, and a random id by which a single token
+ * can be revoked. The signing key and parser are built once,
+ * and verified tokens are cached under a SHA-256 digest of the token until they
+ * expire, so a client sending many requests with one token pays for verification
+ * once. The cache never holds the tokens themselves.
  */
 @Component
 public class JwtUtil {
     
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+    
     @Value("${jwt.secret}")
     private String jwtSecret;
     
     @Value("${jwt.expiration}")
     private long jwtExpiration;
     
-    /**
-     * Generate a signing key from the secret.
-     */
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    private final Cache<String, VerifiedToken> verifiedTokenCache;
+    
+    private SecretKey signingKey;
+    private JwtParser parser;
+    
+    public JwtUtil(@Qualifier("verifiedTokenCache") Cache<String, VerifiedToken> verifiedTokenCache) {
+        this.verifiedTokenCache = verifiedTokenCache;
+    }
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
     
     /**
-     * Generate a JWT token for the authenticated user.
+     * Generate a JWT token for the user.
      */
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return generateToken(userDetails.getUsername());
+    public String generateToken(User user) {
+        return generateToken(user, 0);
     }
     
     /**
-     * Generate a JWT token for the given email.
+     * Generate a JWT token for the user, issued no earlier than the given time so
+     * that a revocation of the user's earlier tokens does not cover it.
      */
-    public String generateToken(String email) {
-        Date now = new Date();
+    public String generateToken(User user, long notIssuedBefore) {
+        Date now = new Date(Math.max(System.currentTimeMillis(), notIssuedBefore));
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
         
         return Jwts.builder()
-                .subject(email)
+                .id(UUID.randomUUID().toString())
+                .subject(user.getEmail())
+                .claim(USER_ID_CLAIM, user.getId())
+                .claim(ROLE_CLAIM, user.getRole().name())
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
     /**
-     * Extract email from JWT token.
+     * Verify a token, from the cache when it was verified before. Revocation is not
+     * checked here; see TokenRevocationService.
+     * 
+     * @return the verified token, or null if the token is invalid or expired
      */
-    public String getEmailFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-        
-        return claims.getSubject();
+    public VerifiedToken verifyToken(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokenCache.getIfPresent(digest);
+        if (cached != null && cached.getExpiresAt() > System.currentTimeMillis()) {
+            return cached;
+        }
+        VerifiedToken verified = verify(token);
+        if (verified == null) {
+            return null;
+        }
+        verifiedTokenCache.put(digest, verified);
+        return verified;
+    }
+    
+    /**
+     * Lifetime of access tokens in milliseconds.
+     */
+    public long getExpiration() {
+        return jwtExpiration;
     }
     
     /**
-     * Validate JWT token.
+     * Check the signature and expiry of a token and decode its claims.
      */
-    public boolean validateToken(String token) {
+    private VerifiedToken verify(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            long expiresAt = claims.getExpiration() != null
+                    ? claims.getExpiration().getTime()
+                    : System.currentTimeMillis() + jwtExpiration;
+            long issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0;
+            Number userId = claims.get(USER_ID_CLAIM, Number.class);
+            String role = claims.get(ROLE_CLAIM, String.class);
+            AuthenticatedUser user = userId == null || role == null
+                    ? new AuthenticatedUser(null, claims.getSubject(), null)
+                    : new AuthenticatedUser(userId.longValue(), claims.getSubject(), Role.valueOf(role));
+            return new VerifiedToken(user, claims.getId(), issuedAt, expiresAt);
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
+        }
+    }
+    
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 }
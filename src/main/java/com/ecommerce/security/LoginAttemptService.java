@@ -0,0 +1,76 @@
+package com.ecommerce.security;
+
+import com.ecommerce.exceptions.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service that throttles password guessing per account and per client address.
+ * 
+ * Failed logins are counted in striped counters that expire a fixed window after
+ * the first failure. Once either count reaches its limit, further logins are
+ * refused with 429 before any password is hashed, so a credential-stuffing run
+ * costs no BCrypt time. A successful login clears its account's count, but not
+ * its address's count.
+ */
+@Service
+public class LoginAttemptService {
+    
+    private final Cache<String, LongAdder> loginFailuresByAccount;
+    private final Cache<String, LongAdder> loginFailuresByIp;
+    
+    @Value("${security.login.max-failures-per-account:10}")
+    private int maxFailuresPerAccount;
+    
+    @Value("${security.login.max-failures-per-ip:50}")
+    private int maxFailuresPerIp;
+    
+    @Value("${security.login.window:15m}")
+    private Duration window;
+    
+    public LoginAttemptService(@Qualifier("loginFailuresByAccount") Cache<String, LongAdder> loginFailuresByAccount,
+                               @Qualifier("loginFailuresByIp") Cache<String, LongAdder> loginFailuresByIp) {
+        this.loginFailuresByAccount = loginFailuresByAccount;
+        this.loginFailuresByIp = loginFailuresByIp;
+    }
+    
+    /**
+     * Refuse a login for an account or address that failed too often in the window.
+     */
+    public void checkAllowed(String email, String clientIp) {
+        if (failures(loginFailuresByAccount, account(email)) >= maxFailuresPerAccount
+                || failures(loginFailuresByIp, clientIp) >= maxFailuresPerIp) {
+            throw new TooManyRequestsException("Too many failed login attempts, please retry later",
+                    window.toSeconds());
+        }
+    }
+    
+    public void recordFailure(String email, String clientIp) {
+        loginFailuresByAccount.get(account(email), key -> new LongAdder()).increment();
+        if (clientIp != null) {
+            loginFailuresByIp.get(clientIp, key -> new LongAdder()).increment();
+        }
+    }
+    
+    public void recordSuccess(String email) {
+        loginFailuresByAccount.invalidate(account(email));
+    }
+    
+    private static long failures(Cache<String, LongAdder> counters, String key) {
+        if (key == null) {
+            return 0;
+        }
+        LongAdder counter = counters.getIfPresent(key);
+        return counter != null ? counter.sum() : 0;
+    }
+    
+    private static String account(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of one rate limit check, with the values reported in the RateLimit-* headers.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RateLimitDecision {
+    
+    private final boolean allowed;
+    private final long limit;
+    private final long remaining;
+    /** Seconds until the client's budget is full again. */
+    private final long resetSeconds;
+    /** Seconds until a rejected request may succeed, 0 when allowed. */
+    private final long retryAfterSeconds;
+    
+    static RateLimitDecision allowed(long limit, long remaining, long resetSeconds) {
+        return new RateLimitDecision(true, limit, remaining, resetSeconds, 0);
+    }
+    
+    static RateLimitDecision rejected(long limit, long resetSeconds, long retryAfterSeconds) {
+        return new RateLimitDecision(false, limit, 0, resetSeconds, Math.max(1, retryAfterSeconds));
+    }
+}
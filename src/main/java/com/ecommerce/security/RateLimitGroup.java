@@ -0,0 +1,54 @@
+package com.ecommerce.security;
+
+/**
+ * Groups of API routes that share a per-client request budget.
+ */
+public enum RateLimitGroup {
+    CATALOG("catalog", "/api/products", "/api/categories"),
+    CART("cart", "/api/cart"),
+    ORDERS("orders", "/api/orders"),
+    PAYMENTS("payments", "/api/payments"),
+    AUTH("auth", "/api/auth");
+    
+    private final String key;
+    private final String[] prefixes;
+    
+    RateLimitGroup(String key, String... prefixes) {
+        this.key = key;
+        this.prefixes = prefixes;
+    }
+    
+    /**
+     * Name of the group in configuration and in bucket keys.
+     */
+    public String getKey() {
+        return key;
+    }
+    
+    /**
+     * The group of a request path, or null for paths that are not rate limited.
+     */
+    public static RateLimitGroup forPath(String path) {
+        for (RateLimitGroup group : values()) {
+            for (String prefix : group.prefixes) {
+                if (path.startsWith(prefix)
+                        && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * The group of a configuration key, or null if there is none.
+     */
+    public static RateLimitGroup forKey(String key) {
+        for (RateLimitGroup group : values()) {
+            if (group.key.equals(key)) {
+                return group;
+            }
+        }
+        return null;
+    }
+}
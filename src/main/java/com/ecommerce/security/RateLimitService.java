@@ -0,0 +1,216 @@
+package com.ecommerce.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service that rate limits API clients per route group.
+ * 
+ * Each client, identified by user id or else by address, has a token bucket per
+ * group, held in a size-bounded cache and dropped after it has been idle long
+ * enough to be full again. The buckets are per node. With rate-limit.shared.enabled,
+ * every node also reports its clients' request counts to the rate_limit_windows
+ * table once per sync interval and reads back the totals of all nodes; a client
+ * over its group's quota for the current window is refused on every node until
+ * the window ends. Requests never wait on the database, so the shared quota is
+ * enforced up to one sync interval late.
+ */
+@Slf4j
+@Service
+public class RateLimitService {
+    
+    private final Cache<String, TokenBucket> rateLimitBuckets;
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${rate-limit.catalog.capacity:100}")
+    private int catalogCapacity;
+    
+    @Value("${rate-limit.catalog.refill-per-second:20}")
+    private double catalogRefill;
+    
+    @Value("${rate-limit.cart.capacity:30}")
+    private int cartCapacity;
+    
+    @Value("${rate-limit.cart.refill-per-second:5}")
+    private double cartRefill;
+    
+    @Value("${rate-limit.orders.capacity:20}")
+    private int ordersCapacity;
+    
+    @Value("${rate-limit.orders.refill-per-second:2}")
+    private double ordersRefill;
+    
+    @Value("${rate-limit.payments.capacity:10}")
+    private int paymentsCapacity;
+    
+    @Value("${rate-limit.payments.refill-per-second:1}")
+    private double paymentsRefill;
+    
+    @Value("${rate-limit.auth.capacity:20}")
+    private int authCapacity;
+    
+    @Value("${rate-limit.auth.refill-per-second:1}")
+    private double authRefill;
+    
+    @Value("${rate-limit.shared.enabled:false}")
+    private boolean shared;
+    
+    @Value("${rate-limit.shared.window:60s}")
+    private Duration window;
+    
+    private final Map<RateLimitGroup, Limit> limits = new EnumMap<>(RateLimitGroup.class);
+    
+    /** Requests allowed on this node since the last sync, per bucket key. */
+    private final AtomicReference<Map<String, LongAdder>> pendingHits = new AtomicReference<>(new ConcurrentHashMap<>());
+    
+    /** Bucket keys over their shared quota, to the end of the window in epoch milliseconds. */
+    private volatile Map<String, Long> blockedUntil = Map.of();
+    
+    /** This node's reported count per bucket key in the current window. */
+    private final Map<String, Long> windowTotals = new HashMap<>();
+    private long currentWindow;
+    
+    public RateLimitService(@Qualifier("rateLimitBuckets") Cache<String, TokenBucket> rateLimitBuckets,
+                            JdbcTemplate jdbcTemplate) {
+        this.rateLimitBuckets = rateLimitBuckets;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @PostConstruct
+    public void init() {
+        limits.put(RateLimitGroup.CATALOG, new Limit(catalogCapacity, catalogRefill));
+        limits.put(RateLimitGroup.CART, new Limit(cartCapacity, cartRefill));
+        limits.put(RateLimitGroup.ORDERS, new Limit(ordersCapacity, ordersRefill));
+        limits.put(RateLimitGroup.PAYMENTS, new Limit(paymentsCapacity, paymentsRefill));
+        limits.put(RateLimitGroup.AUTH, new Limit(authCapacity, authRefill));
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Count one request of a client against its group's budget.
+     * 
+     * @param client user id or address of the client, prefixed by its kind
+     */
+    public RateLimitDecision check(RateLimitGroup group, String client) {
+        Limit limit = limits.get(group);
+        String key = group.getKey() + ":" + client;
+        if (shared) {
+            Long until = blockedUntil.get(key);
+            long wait = until != null ? until - System.currentTimeMillis() : 0;
+            if (wait > 0) {
+                long seconds = (wait + 999) / 1000;
+                return RateLimitDecision.rejected(limit.capacity, seconds, seconds);
+            }
+        }
+        long now = System.nanoTime();
+        RateLimitDecision decision = rateLimitBuckets
+                .get(key, k -> new TokenBucket(limit.capacity, limit.refillPerSecond, now))
+                .tryConsume(now);
+        if (decision.isAllowed() && shared) {
+            pendingHits.get().computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+        return decision;
+    }
+    
+    /**
+     * Report this node's requests for the current window and refresh the set of
+     * clients over their shared quota. Each node writes only its own rows, so nodes
+     * never contend on a row.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.shared.sync-interval:1000}")
+    public synchronized void sync() {
+        if (!enabled || !shared) {
+            return;
+        }
+        long windowMillis = window.toMillis();
+        long windowStart = System.currentTimeMillis() / windowMillis * windowMillis;
+        if (windowStart != currentWindow) {
+            windowTotals.clear();
+            currentWindow = windowStart;
+            jdbcTemplate.update("DELETE FROM rate_limit_windows WHERE window_start < ?", windowStart - windowMillis);
+        }
+        
+        Map<String, LongAdder> hits = pendingHits.getAndSet(new ConcurrentHashMap<>());
+        Map<String, Long> totals = new HashMap<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        hits.forEach((key, count) -> {
+            Long previous = windowTotals.get(key);
+            long total = (previous != null ? previous : 0) + count.sum();
+            totals.put(key, total);
+            if (previous == null) {
+                inserts.add(new Object[]{key, windowStart, nodeId, total});
+            } else {
+                updates.add(new Object[]{total, key, windowStart, nodeId});
+            }
+        });
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO rate_limit_windows (client_key, window_start, node_id, hits) VALUES (?, ?, ?, ?)",
+                    inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE rate_limit_windows SET hits = ? WHERE client_key = ? AND window_start = ? AND node_id = ?",
+                    updates);
+        }
+        windowTotals.putAll(totals);
+        
+        long windowSeconds = window.toSeconds();
+        long minQuota = limits.values().stream().mapToLong(limit -> limit.quota(windowSeconds)).min().orElse(0);
+        long windowEnd = windowStart + windowMillis;
+        Map<String, Long> blocked = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT client_key, SUM(hits) FROM rate_limit_windows WHERE window_start = ? "
+                        + "GROUP BY client_key HAVING SUM(hits) >= ?",
+                rs -> {
+                    String key = rs.getString(1);
+                    RateLimitGroup group = RateLimitGroup.forKey(key.substring(0, key.indexOf(':')));
+                    if (group != null && rs.getLong(2) >= limits.get(group).quota(windowSeconds)) {
+                        blocked.put(key, windowEnd);
+                    }
+                },
+                windowStart, minQuota);
+        if (!blocked.isEmpty() && !blocked.keySet().equals(blockedUntil.keySet())) {
+            log.debug("{} clients over their shared rate limit quota", blocked.size());
+        }
+        blockedUntil = blocked;
+    }
+    
+    private static final class Limit {
+        private final int capacity;
+        private final double refillPerSecond;
+        
+        private Limit(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+        
+        /**
+         * Requests a client may make across all nodes in one window: a full bucket
+         * plus what refills during the window.
+         */
+        private long quota(long windowSeconds) {
+            return capacity + (long) (refillPerSecond * windowSeconds);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ecommerce.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding its whole state in one atomic word.
+ * 
+ * Instead of a token count and a refill time, the bucket tracks the theoretical
+ * arrival time of the next request (the GCRA form of a token bucket): each request
+ * pushes it one refill interval further, and a request is refused when that would
+ * put it more than a full bucket ahead of now. A check is one compare-and-set and
+ * needs no background refill.
+ */
+public final class TokenBucket {
+    
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    
+    private final int capacity;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+    
+    TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.intervalNanos = Math.max(1, (long) (NANOS_PER_SECOND / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+    
+    /**
+     * Take one token if there is one.
+     */
+    RateLimitDecision tryConsume(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = (arrival - nowNanos > 0 ? arrival : nowNanos) + intervalNanos;
+            long backlog = next - nowNanos;
+            if (backlog > burstNanos) {
+                return RateLimitDecision.rejected(capacity, seconds(arrival - nowNanos), seconds(backlog - burstNanos));
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return RateLimitDecision.allowed(capacity, (burstNanos - backlog) / intervalNanos, seconds(backlog));
+            }
+        }
+    }
+    
+    private static long seconds(long nanos) {
+        return Math.max(0, (nanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+    }
+}
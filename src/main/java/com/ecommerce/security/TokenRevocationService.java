@@ -0,0 +1,181 @@
+package com.ecommerce.security;
+
+import com.ecommerce.entities.TokenRevocation;
+import com.ecommerce.repositories.TokenRevocationRepository;
+import com.ecommerce.services.SequenceLogTailer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service that keeps the set of revoked access tokens in memory on every node.
+ * 
+ * Revocations are appended to the token_revocations table and each node tails it
+ * by sequence number, so a logout or password change on one node reaches the
+ * others within the poll interval. Revoked token ids sit in a Bloom filter in
+ * front of an exact set: the check on each request is a few bit probes, and only
+ * a revoked token or a rare false positive looks at the set. Neither ever reads
+ * the database. Entries are forgotten once the tokens they cover have expired,
+ * which keeps both small when access tokens are short-lived.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    
+    private final TokenRevocationRepository tokenRevocationRepository;
+    
+    @Value("${jwt.expiration}")
+    private long jwtExpiration;
+    
+    @Value("${jwt.revocation.filter-capacity:100000}")
+    private int filterCapacity;
+    
+    @Value("${jwt.revocation.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${jwt.revocation.gap-timeout:10s}")
+    private Duration gapTimeout;
+    
+    /** Revoked token id to the expiry of that token, in epoch milliseconds. */
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    
+    /** User id to the time before which all of that user's tokens are revoked, in epoch milliseconds. */
+    private final Map<Long, Long> revokedUsers = new ConcurrentHashMap<>();
+    
+    private volatile BloomFilter filter;
+    private SequenceLogTailer<TokenRevocation> tailer;
+    
+    public TokenRevocationService(TokenRevocationRepository tokenRevocationRepository) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+    }
+    
+    /**
+     * Load every live revocation before the first request is authenticated.
+     */
+    @PostConstruct
+    public synchronized void load() {
+        Long maxId = tokenRevocationRepository.findMaxId();
+        tailer = new SequenceLogTailer<>(tokenRevocationRepository, TokenRevocation::getId,
+                maxId != null ? maxId : 0, batchSize, gapTimeout);
+        filter = new BloomFilter(filterCapacity, FALSE_POSITIVE_RATE);
+        List<TokenRevocation> live = tokenRevocationRepository.findByExpiresAtAfter(LocalDateTime.now());
+        live.forEach(this::apply);
+        log.info("Loaded {} token revocations, tailing from sequence {}", live.size(), tailer.getPosition());
+    }
+    
+    /**
+     * Whether a verified token has been revoked, by its own id or by a revocation of
+     * all of its user's tokens. Tokens without an id can only be revoked per user.
+     * 
+     * @param userId the token's user, resolved by the caller for tokens that lack the claim
+     */
+    public boolean isRevoked(VerifiedToken token, Long userId) {
+        if (!revokedUsers.isEmpty() && userId != null) {
+            Long revokedBefore = revokedUsers.get(userId);
+            if (revokedBefore != null && token.getIssuedAt() < revokedBefore) {
+                return true;
+            }
+        }
+        String tokenId = token.getTokenId();
+        return tokenId != null && filter.mightContain(tokenId) && revokedTokens.containsKey(tokenId);
+    }
+    
+    /**
+     * Revoke one access token until it expires.
+     */
+    public void revokeToken(VerifiedToken token) {
+        if (token.getTokenId() == null) {
+            return;
+        }
+        apply(tokenRevocationRepository.save(TokenRevocation.builder()
+                .tokenId(token.getTokenId())
+                .userId(token.getUser().getId())
+                .expiresAt(toDateTime(token.getExpiresAt()))
+                .build()));
+    }
+    
+    /**
+     * Revoke every access token issued to a user so far. Token issue times have
+     * one-second precision, so the cut-off is the start of the next second; tokens
+     * issued afterwards are stamped no earlier than it (see {@link #getRevokedBefore}).
+     */
+    public void revokeUser(Long userId) {
+        long now = System.currentTimeMillis();
+        long revokedBefore = (now / 1000 + 1) * 1000;
+        apply(tokenRevocationRepository.save(TokenRevocation.builder()
+                .userId(userId)
+                .revokedBefore(toDateTime(revokedBefore))
+                .expiresAt(toDateTime(revokedBefore + jwtExpiration))
+                .build()));
+    }
+    
+    /**
+     * The time before which all of a user's tokens are revoked, in epoch
+     * milliseconds, or 0. New tokens must not be issued before it.
+     */
+    public long getRevokedBefore(Long userId) {
+        return revokedUsers.getOrDefault(userId, 0L);
+    }
+    
+    /**
+     * Apply revocations committed by other nodes since the last poll.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.poll-interval:1000}")
+    public synchronized void poll() {
+        tailer.poll().forEach(this::apply);
+    }
+    
+    /**
+     * Forget revocations of expired tokens, rebuild the filter without them, and
+     * drop their log rows.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.cleanup-interval:60000}")
+    @Transactional
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+            revokedUsers.values().removeIf(revokedBefore -> revokedBefore + jwtExpiration <= now);
+            BloomFilter rebuilt = new BloomFilter(Math.max(filterCapacity, revokedTokens.size() * 2), FALSE_POSITIVE_RATE);
+            revokedTokens.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+        }
+        int purged = tokenRevocationRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.debug("Purged {} token revocations", purged);
+        }
+    }
+    
+    /**
+     * Add an entry to the in-memory state. Entries are applied again when the log is
+     * tailed past them, which is harmless.
+     */
+    private synchronized void apply(TokenRevocation entry) {
+        if (entry.getTokenId() != null) {
+            revokedTokens.put(entry.getTokenId(), toEpochMillis(entry.getExpiresAt()));
+            filter.put(entry.getTokenId());
+        } else if (entry.getUserId() != null && entry.getRevokedBefore() != null) {
+            revokedUsers.merge(entry.getUserId(), toEpochMillis(entry.getRevokedBefore()), Math::max);
+        }
+    }
+    
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+    
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
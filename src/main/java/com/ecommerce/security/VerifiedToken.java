@@ -0,0 +1,18 @@
+package com.ecommerce.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A JWT whose signature has been checked, with the user it carries, its id (null
+ * for tokens issued without one) and its issue and expiry times in epoch milliseconds.
+ */
+@Getter
+@RequiredArgsConstructor
+public class VerifiedToken {
+    
+    private final AuthenticatedUser user;
+    private final String tokenId;
+    private final long issuedAt;
+    private final long expiresAt;
+}
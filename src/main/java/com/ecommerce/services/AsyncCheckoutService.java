@@ -0,0 +1,262 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.CheckoutTicketDTO;
+import com.ecommerce.dto.CheckoutTicketDTO.CheckoutStatus;
+import com.ecommerce.dto.CreateOrderRequest;
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.entities.User;
+import com.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.exceptions.ServiceUnavailableException;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the optional async checkout mode (checkout.async.enabled).
+ * 
+ * A checkout request is validated, queued and answered at once with a token;
+ * a fixed pool of workers takes queued checkouts in groups and commits each
+ * group in one transaction, so a burst of orders costs a few commits and a few
+ * connections instead of one of each per request. Clients poll the token for
+ * the result. The queue is bounded: when it is full, checkouts are refused
+ * with 503 rather than piling up. Tickets live in memory on the node that took
+ * the request, so polls must reach the same node.
+ */
+@Slf4j
+@Service
+public class AsyncCheckoutService {
+    
+    private static final long POLL_INTERVAL_MS = 100;
+    
+    private final OrderService orderService;
+    private final Cache<String, CheckoutTicketDTO> checkoutTicketCache;
+    
+    @Value("${checkout.async.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${checkout.async.workers:2}")
+    private int workers;
+    
+    @Value("${checkout.async.batch-size:32}")
+    private int batchSize;
+    
+    @Value("${checkout.async.queue-capacity:1000}")
+    private int queueCapacity;
+    
+    private BlockingQueue<PendingCheckout> queue;
+    private ExecutorService executor;
+    private volatile boolean running;
+    
+    public AsyncCheckoutService(OrderService orderService,
+                                @Qualifier("checkoutTicketCache") Cache<String, CheckoutTicketDTO> checkoutTicketCache) {
+        this.orderService = orderService;
+        this.checkoutTicketCache = checkoutTicketCache;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "checkout-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+        log.info("Async checkout enabled: {} workers, batches of up to {}", workers, batchSize);
+    }
+    
+    /**
+     * Stop taking checkouts and let the workers commit the ones already queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} queued checkouts were not committed before shutdown", queue.size());
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Queue a checkout of the user's cart. With async mode off the order is created
+     * right away and the ticket comes back completed.
+     */
+    public CheckoutTicketDTO submit(User user, CreateOrderRequest request) {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime submittedAt = LocalDateTime.now();
+        if (!running) {
+            OrderDTO order = orderService.createOrder(user, request);
+            CheckoutTicketDTO ticket = completed(token, submittedAt, order);
+            checkoutTicketCache.put(key(user.getId(), token), ticket);
+            return ticket;
+        }
+        
+        orderService.validateCheckout(user, request);
+        CheckoutTicketDTO ticket = CheckoutTicketDTO.builder()
+                .token(token)
+                .status(CheckoutStatus.PENDING)
+                .submittedAt(submittedAt)
+                .build();
+        checkoutTicketCache.put(key(user.getId(), token), ticket);
+        if (!queue.offer(new PendingCheckout(user, request, token, submittedAt))) {
+            checkoutTicketCache.invalidate(key(user.getId(), token));
+            throw new ServiceUnavailableException("Too many checkouts in progress, please retry shortly");
+        }
+        return ticket;
+    }
+    
+    /**
+     * Whether checkouts are queued rather than created right away.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Current state of one of the user's checkouts.
+     */
+    public CheckoutTicketDTO getTicket(Long userId, String token) {
+        CheckoutTicketDTO ticket = checkoutTicketCache.getIfPresent(key(userId, token));
+        if (ticket == null) {
+            throw new ResourceNotFoundException("Checkout", "token", token);
+        }
+        return ticket;
+    }
+    
+    private void work() {
+        List<PendingCheckout> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCheckout first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Checkout worker failed on a batch of {}", batch.size(), e);
+                batch.forEach(checkout -> fail(checkout, e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Commit a batch of checkouts, sharing one stock update, one flush and one commit
+     * among those whose carts fit in the stock left. The rest are committed one by one
+     * afterwards, so a short line fails only its own checkout. If the shared transaction still fails,
+     * e.g. because stock moved after the check, it rolls back and its checkouts are
+     * retried on their own as well.
+     */
+    private void commit(List<PendingCheckout> batch) {
+        List<PendingCheckout> group = new ArrayList<>(batch.size());
+        List<PendingCheckout> alone = new ArrayList<>();
+        if (batch.size() > 1) {
+            boolean[] fits = orderService.fitStock(batch.stream()
+                    .map(checkout -> checkout.user.getId())
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < batch.size(); i++) {
+                (fits[i] ? group : alone).add(batch.get(i));
+            }
+        } else {
+            alone.addAll(batch);
+        }
+        
+        if (group.size() > 1) {
+            try {
+                List<OrderDTO> orders = orderService.createOrders(
+                        group.stream().map(checkout -> checkout.user).collect(Collectors.toList()),
+                        group.stream().map(checkout -> checkout.request).collect(Collectors.toList()));
+                for (int i = 0; i < group.size(); i++) {
+                    complete(group.get(i), orders.get(i));
+                }
+                group.clear();
+            } catch (RuntimeException e) {
+                log.debug("Checkout batch of {} rolled back, committing one by one: {}", group.size(), e.getMessage());
+            }
+        }
+        alone.addAll(0, group);
+        for (PendingCheckout checkout : alone) {
+            try {
+                complete(checkout, orderService.createOrder(checkout.user, checkout.request));
+            } catch (RuntimeException e) {
+                fail(checkout, e);
+            }
+        }
+    }
+    
+    private void complete(PendingCheckout checkout, OrderDTO order) {
+        checkoutTicketCache.put(key(checkout.user.getId(), checkout.token),
+                completed(checkout.token, checkout.submittedAt, order));
+    }
+    
+    private void fail(PendingCheckout checkout, RuntimeException e) {
+        checkoutTicketCache.put(key(checkout.user.getId(), checkout.token), CheckoutTicketDTO.builder()
+                .token(checkout.token)
+                .status(CheckoutStatus.FAILED)
+                .error(e.getMessage())
+                .submittedAt(checkout.submittedAt)
+                .completedAt(LocalDateTime.now())
+                .build());
+    }
+    
+    private static CheckoutTicketDTO completed(String token, LocalDateTime submittedAt, OrderDTO order) {
+        return CheckoutTicketDTO.builder()
+                .token(token)
+                .status(CheckoutStatus.COMPLETED)
+                .order(order)
+                .submittedAt(submittedAt)
+                .completedAt(LocalDateTime.now())
+                .build();
+    }
+    
+    /**
+     * Tickets are keyed by owner as well, so a token only resolves for its user.
+     */
+    private static String key(Long userId, String token) {
+        return userId + ":" + token;
+    }
+    
+    private static final class PendingCheckout {
+        private final User user;
+        private final CreateOrderRequest request;
+        private final String token;
+        private final LocalDateTime submittedAt;
+        
+        private PendingCheckout(User user, CreateOrderRequest request, String token, LocalDateTime submittedAt) {
+            this.user = user;
+            this.request = request;
+            this.token = token;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
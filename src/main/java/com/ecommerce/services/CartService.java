@@ -6,11 +6,14 @@ import com.ecommerce.exceptions.BadRequestException;
 import com.ecommerce.exceptions.ResourceNotFoundException;
 import com.ecommerce.repositories.CartItemRepository;
 import com.ecommerce.repositories.CartRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,6 +27,10 @@ public class CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductService productService;
+    private final StockReservationService stockReservationService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
     
     /**
      * Get cart for user.
@@ -44,8 +51,9 @@ public class CartService {
         
         Product product = productService.getProductEntityById(request.getProductId());
         
-        // Check stock
-        if (product.getStockQuantity() < request.getQuantity()) {
+        // Check stock, less what checkouts in progress are holding
+        int available = product.getStockQuantity() - stockReservationService.getReservedQuantity(product.getId());
+        if (available < request.getQuantity()) {
             throw new BadRequestException("Insufficient stock for product: " + product.getName());
         }
         
@@ -57,7 +65,7 @@ public class CartService {
         
         if (existingItem != null) {
             int newQuantity = existingItem.getQuantity() + request.getQuantity();
-            if (product.getStockQuantity() < newQuantity) {
+            if (available < newQuantity) {
                 throw new BadRequestException("Insufficient stock for product: " + product.getName());
             }
             existingItem.setQuantity(newQuantity);
@@ -72,6 +80,7 @@ public class CartService {
             cartItemRepository.save(newItem);
         }
         
+        cart.touch();
         cart = cartRepository.save(cart);
         return toDTO(cart);
     }
@@ -103,6 +112,7 @@ public class CartService {
             cartItemRepository.save(item);
         }
         
+        cart.touch();
         return toDTO(cart);
     }
     
@@ -124,6 +134,7 @@ public class CartService {
         cart.getItems().remove(item);
         cartItemRepository.delete(item);
         
+        cart.touch();
         return toDTO(cart);
     }
     
@@ -134,10 +145,19 @@ public class CartService {
     public void clearCart(User user) {
         Cart cart = cartRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Cart", "userId", user.getId()));
-        
-        cartItemRepository.deleteByCartId(cart.getId());
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        clearCart(cart);
+    }
+    
+    /**
+     * Empty a loaded cart with one bulk delete, whatever its size. The cart is detached
+     * afterwards, so a later read in the same transaction sees it empty instead of the
+     * stale items still held by the persistence context.
+     */
+    @Transactional
+    public void clearCart(Cart cart) {
+        cartItemRepository.deleteAllByCartId(cart.getId());
+        cartRepository.touch(cart.getId(), LocalDateTime.now());
+        entityManager.detach(cart);
     }
     
     /**
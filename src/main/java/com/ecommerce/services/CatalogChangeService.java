@@ -0,0 +1,222 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.CategoryDTO;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.entities.CatalogChange;
+import com.ecommerce.entities.CatalogEntityType;
+import com.ecommerce.entities.Category;
+import com.ecommerce.entities.Product;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.repositories.CatalogChangeRepository;
+import com.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.repositories.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service that propagates catalog mutations between API nodes through the
+ * catalog_changes table, without an external broker.
+ * 
+ * Every product or category change appends a row in the same transaction as the
+ * mutation. Each node tails the log by sequence number and replays remote changes
+ * as local ProductChangedEvent/CategoryChangedEvent, so every local cache and
+ * index invalidates exactly as it does for local writes. Staleness is bounded by
+ * the poll interval.
+ */
+@Slf4j
+@Service
+public class CatalogChangeService {
+    
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductService productService;
+    private final CategoryService categoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    
+    @Value("${catalog.changes.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${catalog.changes.gap-timeout:10s}")
+    private Duration gapTimeout;
+    
+    @Value("${catalog.changes.retention:1d}")
+    private Duration retention;
+    
+    private volatile SequenceLogTailer<CatalogChange> tailer;
+    
+    public CatalogChangeService(CatalogChangeRepository catalogChangeRepository,
+                                ProductRepository productRepository,
+                                CategoryRepository categoryRepository,
+                                ProductService productService,
+                                CategoryService categoryService,
+                                ApplicationEventPublisher eventPublisher,
+                                JdbcTemplate jdbcTemplate,
+                                @Value("${catalog.changes.node-id:}") String nodeId) {
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.productService = productService;
+        this.categoryService = categoryService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+    }
+    
+    /**
+     * Start tailing from the current end of the log; local caches are built fresh on startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        Long maxId = catalogChangeRepository.findMaxId();
+        tailer = new SequenceLogTailer<>(catalogChangeRepository, CatalogChange::getId,
+                maxId != null ? maxId : 0, batchSize, gapTimeout);
+        log.info("Catalog change log tailing from sequence {} as node {}", tailer.getPosition(), nodeId);
+    }
+    
+    /**
+     * Record a product change in the mutating transaction.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void recordProductChange(ProductChangedEvent event) {
+        record(CatalogEntityType.PRODUCT, event.getProduct().getId(), false);
+    }
+    
+    /**
+     * Record a category change in the mutating transaction.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void recordCategoryChange(CategoryChangedEvent event) {
+        record(CatalogEntityType.CATEGORY, event.getCategory().getId(), event.isDeleted());
+    }
+    
+    /**
+     * Record many product changes in the current transaction with one JDBC batch.
+     * Used by bulk writers that bypass JPA and publish their events after commit.
+     */
+    public void recordProductChanges(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO catalog_changes (entity_type, entity_id, deleted, node_id, created_at) VALUES (?, ?, ?, ?, ?)",
+                productIds,
+                batchSize,
+                (statement, productId) -> {
+                    statement.setString(1, CatalogEntityType.PRODUCT.name());
+                    statement.setLong(2, productId);
+                    statement.setBoolean(3, false);
+                    statement.setString(4, nodeId);
+                    statement.setTimestamp(5, now);
+                });
+    }
+    
+    /**
+     * Apply changes committed by other nodes since the last poll.
+     */
+    @Scheduled(fixedDelayString = "${catalog.changes.poll-interval:1000}")
+    public synchronized void poll() {
+        if (tailer == null) {
+            return;
+        }
+        List<CatalogChange> remote = new ArrayList<>();
+        for (CatalogChange change : tailer.poll()) {
+            if (!nodeId.equals(change.getNodeId())) {
+                remote.add(change);
+            }
+        }
+        if (!remote.isEmpty()) {
+            apply(remote);
+        }
+    }
+    
+    /**
+     * Drop log rows that every node has long since applied.
+     */
+    @Scheduled(fixedDelayString = "${catalog.changes.cleanup-interval:3600000}")
+    @Transactional
+    public void purgeOldChanges() {
+        int purged = catalogChangeRepository.deleteOlderThan(LocalDateTime.now().minus(retention));
+        if (purged > 0) {
+            log.debug("Purged {} catalog changes", purged);
+        }
+    }
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    private void record(CatalogEntityType type, Long entityId, boolean deleted) {
+        catalogChangeRepository.save(CatalogChange.builder()
+                .entityType(type)
+                .entityId(entityId)
+                .deleted(deleted)
+                .nodeId(nodeId)
+                .build());
+    }
+    
+    /**
+     * Reload the changed entities in one query per type and replay them locally.
+     */
+    private void apply(List<CatalogChange> changes) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        Set<Long> categoryIds = new LinkedHashSet<>();
+        Set<Long> deletedCategoryIds = new LinkedHashSet<>();
+        for (CatalogChange change : changes) {
+            if (change.getEntityType() == CatalogEntityType.PRODUCT) {
+                productIds.add(change.getEntityId());
+            } else if (Boolean.TRUE.equals(change.getDeleted())) {
+                deletedCategoryIds.add(change.getEntityId());
+            } else {
+                categoryIds.add(change.getEntityId());
+            }
+        }
+        categoryIds.removeAll(deletedCategoryIds);
+        
+        for (Long id : deletedCategoryIds) {
+            eventPublisher.publishEvent(new CategoryChangedEvent(CategoryDTO.builder().id(id).build(), true));
+        }
+        if (!categoryIds.isEmpty()) {
+            Map<Long, Category> categories = categoryRepository.findAllWithParentByIdIn(categoryIds).stream()
+                    .collect(Collectors.toMap(Category::getId, Function.identity()));
+            for (Long id : categoryIds) {
+                Category category = categories.get(id);
+                eventPublisher.publishEvent(category != null
+                        ? new CategoryChangedEvent(categoryService.toDTO(category), false)
+                        : new CategoryChangedEvent(CategoryDTO.builder().id(id).build(), true));
+            }
+        }
+        if (!productIds.isEmpty()) {
+            Map<Long, Product> products = productRepository.findAllWithCategoryByIdIn(productIds).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            for (Long id : productIds) {
+                Product product = products.get(id);
+                eventPublisher.publishEvent(new ProductChangedEvent(product != null
+                        ? productService.toDTO(product)
+                        : ProductDTO.builder().id(id).isActive(false).build()));
+            }
+        }
+        log.debug("Applied {} remote catalog changes", changes.size());
+    }
+}
@@ -0,0 +1,335 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductPage;
+import com.ecommerce.dto.ProductPageRequest;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized snapshots of the hottest anonymous catalog responses.
+ * 
+ * Each snapshot holds the JSON body as immutable bytes, plus gzip and deflate
+ * encodings and a strong ETag, so a hit is served straight from memory without
+ * querying, mapping or serializing. Category changes drop the affected snapshots
+ * at once (requests fall back to the regular path) and a background thread
+ * rebuilds them, coalescing bursts of changes into one rebuild. Product changes
+ * only touch the first product page, and only when they can alter it; that page
+ * keeps being served until its rebuild is ready, as checkouts change it often.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogSnapshotService {
+    
+    private static final long REBUILD_DELAY_MS = 200;
+    
+    private final CategoryService categoryService;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    
+    private final Map<Key, Snapshot> snapshots = new ConcurrentHashMap<>();
+    /** How often each snapshot has been invalidated; guarded by {@code this}. */
+    private final Map<Key, Long> generations = new EnumMap<>(Key.class);
+    /** Snapshots still served while their rebuild is pending; guarded by {@code this}. */
+    private final Set<Key> stale = EnumSet.noneOf(Key.class);
+    /**
+     * Highest product id a change must not exceed to affect the first product page:
+     * its last id, or any id while the page is not full. Guarded by {@code this}.
+     */
+    private long firstPageBound = Long.MAX_VALUE;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-snapshot-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * The responses kept as snapshots.
+     */
+    public enum Key {
+        /** GET /api/categories */
+        CATEGORIES,
+        /** GET /api/categories/top */
+        TOP_CATEGORIES,
+        /** GET /api/products without parameters */
+        FIRST_PRODUCT_PAGE
+    }
+    
+    /**
+     * One immutable response body in every supported encoding.
+     */
+    @Getter
+    public static final class Snapshot {
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final byte[] deflate;
+        private final String etag;
+        
+        private Snapshot(byte[] identity) throws IOException {
+            this.identity = identity;
+            this.gzip = compress(identity, GZIPOutputStream::new);
+            this.deflate = compress(identity, DeflaterOutputStream::new);
+            this.etag = digest(identity);
+        }
+        
+        private interface Encoder {
+            OutputStream wrap(OutputStream output) throws IOException;
+        }
+        
+        private static byte[] compress(byte[] body, Encoder encoder) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (OutputStream output = encoder.wrap(buffer)) {
+                output.write(body);
+            }
+            return buffer.toByteArray();
+        }
+        
+        private static String digest(byte[] body) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+    
+    /**
+     * Build every snapshot once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduleRebuild();
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        onProductsChanged(List.of(event.getProduct()));
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        onProductsChanged(event.getProducts());
+    }
+    
+    /**
+     * Category changes alter the category lists and the category names embedded in products.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidate(Key.values());
+    }
+    
+    /**
+     * Serve a snapshot with the best encoding the client accepts, or 304 when the
+     * client's copy is current. Returns null while the snapshot is being rebuilt,
+     * in which case the caller answers through the regular path.
+     */
+    public ResponseEntity<byte[]> respond(Key key, String acceptEncoding, String ifNoneMatch) {
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        String encoding = negotiateEncoding(acceptEncoding);
+        String etag = "\"" + snapshot.etag + ("identity".equals(encoding) ? "" : "-" + encoding) + "\"";
+        
+        if (ifNoneMatch != null && matches(ifNoneMatch, snapshot.etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        switch (encoding) {
+            case "gzip":
+                return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip);
+            case "deflate":
+                return response.header(HttpHeaders.CONTENT_ENCODING, "deflate").body(snapshot.deflate);
+            default:
+                return response.body(snapshot.identity);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+    
+    /**
+     * The first page lists active products by ascending id, so a product past its
+     * last id can neither show on it nor push into it.
+     */
+    private void onProductsChanged(List<ProductDTO> products) {
+        synchronized (this) {
+            if (products.stream().noneMatch(product -> product.getId() <= firstPageBound)) {
+                return;
+            }
+            generations.merge(Key.FIRST_PRODUCT_PAGE, 1L, Long::sum);
+            if (snapshots.containsKey(Key.FIRST_PRODUCT_PAGE)) {
+                stale.add(Key.FIRST_PRODUCT_PAGE);
+            }
+        }
+        scheduleRebuild();
+    }
+    
+    private void invalidate(Key... keys) {
+        synchronized (this) {
+            for (Key key : keys) {
+                generations.merge(key, 1L, Long::sum);
+                snapshots.remove(key);
+                stale.remove(key);
+            }
+        }
+        scheduleRebuild();
+    }
+    
+    private void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.schedule(() -> {
+                rebuildPending.set(false);
+                rebuild();
+            }, REBUILD_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Rebuild the missing and stale snapshots. A snapshot is only installed if no
+     * change to that same snapshot arrived while it was being built; otherwise the
+     * rebuild that change scheduled installs a fresh one.
+     */
+    private void rebuild() {
+        for (Key key : Key.values()) {
+            long built;
+            synchronized (this) {
+                if (snapshots.containsKey(key) && !stale.contains(key)) {
+                    continue;
+                }
+                built = generationOf(key);
+            }
+            try {
+                Object body = load(key);
+                Snapshot snapshot = new Snapshot(objectMapper.writeValueAsBytes(body));
+                synchronized (this) {
+                    if (generationOf(key) == built) {
+                        snapshots.put(key, snapshot);
+                        stale.remove(key);
+                        if (body instanceof ProductPage page) {
+                            firstPageBound = Boolean.TRUE.equals(page.getHasMore())
+                                    ? page.getItems().get(page.getItems().size() - 1).getId()
+                                    : Long.MAX_VALUE;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to build catalog snapshot {}", key, e);
+            }
+        }
+        log.debug("Catalog snapshots rebuilt: {}", snapshots.keySet());
+    }
+    
+    private synchronized long generationOf(Key key) {
+        return generations.getOrDefault(key, 0L);
+    }
+    
+    private Object load(Key key) {
+        switch (key) {
+            case CATEGORIES:
+                return categoryService.getAllCategories();
+            case TOP_CATEGORIES:
+                return categoryService.getTopLevelCategories();
+            case FIRST_PRODUCT_PAGE:
+                return productService.getAllProducts(new ProductPageRequest());
+            default:
+                throw new IllegalArgumentException("Unknown snapshot: " + key);
+        }
+    }
+    
+    /**
+     * Pick gzip, then deflate, then identity, honouring q=0 exclusions.
+     */
+    private static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return "identity";
+        }
+        Set<String> accepted = new HashSet<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            boolean excluded = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        excluded = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        excluded = true;
+                    }
+                }
+            }
+            if (!excluded) {
+                accepted.add(coding);
+            }
+        }
+        if (accepted.contains("gzip") || accepted.contains("*")) {
+            return "gzip";
+        }
+        if (accepted.contains("deflate")) {
+            return "deflate";
+        }
+        return "identity";
+    }
+    
+    /**
+     * Whether an If-None-Match header names any encoding of this snapshot.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            tag = tag.replace("\"", "");
+            if (tag.equals(etag) || tag.startsWith(etag + "-")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,14 +1,21 @@
 package com.ecommerce.services;
 
 import com.ecommerce.dto.CategoryDTO;
+import com.ecommerce.dto.CategoryTreeDTO;
 import com.ecommerce.entities.Category;
+import com.ecommerce.events.CategoryChangedEvent;
 import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.exceptions.PreconditionFailedException;
 import com.ecommerce.exceptions.ResourceNotFoundException;
 import com.ecommerce.repositories.CategoryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,13 +27,18 @@ import java.util.stream.Collectors;
 public class CategoryService {
     
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<Long, CategoryDTO> categoryCache;
+    private final CategoryTreeService categoryTreeService;
+    private final EntityVersionService entityVersionService;
     
     /**
-     * Get all categories.
+     * Get all categories, in tree pre-order.
      */
     public List<CategoryDTO> getAllCategories() {
-        return categoryRepository.findAll().stream()
-                .map(this::toDTO)
+        CategoryTree tree = categoryTreeService.getTree();
+        return tree.getPreorder().stream()
+                .map(node -> toDTO(tree, node))
                 .collect(Collectors.toList());
     }
     
@@ -34,8 +46,18 @@ public class CategoryService {
      * Get top-level categories.
      */
     public List<CategoryDTO> getTopLevelCategories() {
-        return categoryRepository.findByParentIsNull().stream()
-                .map(this::toDTO)
+        CategoryTree tree = categoryTreeService.getTree();
+        return tree.getRoots().stream()
+                .map(node -> toDTO(tree, node))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Get the full category hierarchy.
+     */
+    public List<CategoryTreeDTO> getCategoryTree() {
+        return categoryTreeService.getTree().getRoots().stream()
+                .map(this::toTreeDTO)
                 .collect(Collectors.toList());
     }
     
@@ -43,17 +65,45 @@ public class CategoryService {
      * Get category by ID.
      */
     public CategoryDTO getCategoryById(Long id) {
-        Category category = categoryRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
-        return toDTO(category);
+        return categoryCache.get(id, key -> categoryRepository.findWithParentById(key)
+                .map(this::toDTO)
+                .orElseThrow(() -> new ResourceNotFoundException("Category", "id", key)));
     }
     
     /**
      * Get subcategories of a parent.
      */
     public List<CategoryDTO> getSubcategories(Long parentId) {
-        return categoryRepository.findByParentId(parentId).stream()
-                .map(this::toDTO)
+        CategoryTree tree = categoryTreeService.getTree();
+        return tree.find(parentId)
+                .map(CategoryTree.Node::getChildren)
+                .orElse(Collections.emptyList())
+                .stream()
+                .map(node -> toDTO(tree, node))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Get the breadcrumb path from the top-level category down to the given one.
+     */
+    public List<CategoryDTO> getBreadcrumbs(Long id) {
+        CategoryTree tree = categoryTreeService.getTree();
+        CategoryTree.Node node = tree.find(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        return tree.getPath(node).stream()
+                .map(crumb -> toDTO(tree, crumb))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Get the IDs of a category and all of its descendants.
+     */
+    public List<Long> getSubtreeIds(Long id) {
+        CategoryTree tree = categoryTreeService.getTree();
+        CategoryTree.Node node = tree.find(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        return tree.getSubtree(node).stream()
+                .map(CategoryTree.Node::getId)
                 .collect(Collectors.toList());
     }
     
@@ -79,7 +129,9 @@ public class CategoryService {
         }
         
         category = categoryRepository.save(category);
-        return toDTO(category);
+        CategoryDTO dto = toDTO(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(dto, false));
+        return dto;
     }
     
     /**
@@ -87,15 +139,28 @@ public class CategoryService {
      */
     @Transactional
     public CategoryDTO updateCategory(Long id, String name, String description, String imageUrl) {
-        Category category = categoryRepository.findById(id)
+        return updateCategory(id, name, description, imageUrl, null);
+    }
+    
+    /**
+     * Update category if it still matches the client's If-Match ETag (admin only).
+     */
+    @Transactional
+    public CategoryDTO updateCategory(Long id, String name, String description, String imageUrl, String ifMatch) {
+        Category category = categoryRepository.findWithParentById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        if (!EntityVersionService.matchesIfMatch(ifMatch, entityVersionService.getCategoryVersion(category))) {
+            throw new PreconditionFailedException("Category " + id + " has changed since it was read");
+        }
         
         category.setName(name);
         category.setDescription(description);
         category.setImageUrl(imageUrl);
         
         category = categoryRepository.save(category);
-        return toDTO(category);
+        CategoryDTO dto = toDTO(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(dto, false));
+        return dto;
     }
     
     /**
@@ -105,13 +170,58 @@ public class CategoryService {
     public void deleteCategory(Long id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        CategoryDTO dto = toDTO(category);
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(dto, true));
+    }
+    
+    /**
+     * Drop cached DTOs for a category and its children (which embed its name)
+     * once the change commits. Deletes cascade to subcategories, so they clear the cache.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            categoryCache.invalidateAll();
+            return;
+        }
+        Long categoryId = event.getCategory().getId();
+        categoryCache.invalidate(categoryId);
+        categoryCache.asMap().values().removeIf(category -> categoryId.equals(category.getParentId()));
+    }
+    
+    /**
+     * Convert a tree node to DTO, resolving the parent name from the tree.
+     */
+    private CategoryDTO toDTO(CategoryTree tree, CategoryTree.Node node) {
+        CategoryTree.Node parent = node.getParentId() != null ? tree.find(node.getParentId()).orElse(null) : null;
+        return CategoryDTO.builder()
+                .id(node.getId())
+                .name(node.getName())
+                .description(node.getDescription())
+                .imageUrl(node.getImageUrl())
+                .parentId(node.getParentId())
+                .parentName(parent != null ? parent.getName() : null)
+                .build();
+    }
+    
+    private CategoryTreeDTO toTreeDTO(CategoryTree.Node node) {
+        return CategoryTreeDTO.builder()
+                .id(node.getId())
+                .name(node.getName())
+                .description(node.getDescription())
+                .imageUrl(node.getImageUrl())
+                .depth(node.getDepth())
+                .children(node.getChildren().stream()
+                        .map(this::toTreeDTO)
+                        .collect(Collectors.toList()))
+                .build();
     }
     
     /**
      * Convert Category entity to DTO.
      */
-    private CategoryDTO toDTO(Category category) {
+    public CategoryDTO toDTO(Category category) {
         return CategoryDTO.builder()
                 .id(category.getId())
                 .name(category.getName())
@@ -0,0 +1,144 @@
+package com.ecommerce.services;
+
+import com.ecommerce.entities.Category;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the category hierarchy.
+ * 
+ * Nodes are numbered in pre-order, so the subtree of a node is the contiguous
+ * interval [pre, last] of the pre-order list and ancestry is an interval check.
+ * Siblings are ordered by id.
+ */
+public final class CategoryTree {
+    
+    private final List<Node> preorder;
+    private final List<Node> roots;
+    private final Map<Long, Node> byId;
+    private final Map<String, Node> byName;
+    
+    /**
+     * A category in the tree.
+     */
+    @Getter
+    public static final class Node {
+        private final Long id;
+        private final String name;
+        private final String description;
+        private final String imageUrl;
+        private final Long parentId;
+        private final List<Node> children = new ArrayList<>();
+        private int depth;
+        private int pre;
+        private int last;
+        
+        private Node(Category category) {
+            this.id = category.getId();
+            this.name = category.getName();
+            this.description = category.getDescription();
+            this.imageUrl = category.getImageUrl();
+            this.parentId = category.getParent() != null ? category.getParent().getId() : null;
+        }
+        
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+    }
+    
+    private CategoryTree(List<Node> preorder, List<Node> roots, Map<Long, Node> byId) {
+        this.preorder = Collections.unmodifiableList(preorder);
+        this.roots = Collections.unmodifiableList(roots);
+        this.byId = byId;
+        this.byName = new HashMap<>(byId.size() * 2);
+        for (Node node : preorder) {
+            byName.put(node.name.toLowerCase(Locale.ROOT), node);
+        }
+    }
+    
+    /**
+     * Build a tree from all categories. Categories whose parent is missing become roots.
+     */
+    public static CategoryTree build(List<Category> categories) {
+        Map<Long, Node> byId = new HashMap<>();
+        for (Category category : categories) {
+            byId.put(category.getId(), new Node(category));
+        }
+        
+        List<Node> roots = new ArrayList<>();
+        List<Node> sorted = new ArrayList<>(byId.values());
+        sorted.sort(Comparator.comparing(Node::getId));
+        for (Node node : sorted) {
+            Node parent = node.parentId != null ? byId.get(node.parentId) : null;
+            if (parent != null) {
+                parent.children.add(node);
+            } else {
+                roots.add(node);
+            }
+        }
+        
+        List<Node> preorder = new ArrayList<>(byId.size());
+        for (Node root : roots) {
+            number(root, 0, preorder);
+        }
+        return new CategoryTree(preorder, roots, byId);
+    }
+    
+    private static void number(Node node, int depth, List<Node> preorder) {
+        node.depth = depth;
+        node.pre = preorder.size();
+        preorder.add(node);
+        for (Node child : node.children) {
+            number(child, depth + 1, preorder);
+        }
+        node.last = preorder.size() - 1;
+    }
+    
+    public Optional<Node> find(Long id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+    
+    /**
+     * Find a category by name, ignoring case. Category names are unique.
+     */
+    public Optional<Node> findByName(String name) {
+        return Optional.ofNullable(byName.get(name.toLowerCase(Locale.ROOT)));
+    }
+    
+    /**
+     * All categories in pre-order.
+     */
+    public List<Node> getPreorder() {
+        return preorder;
+    }
+    
+    public List<Node> getRoots() {
+        return roots;
+    }
+    
+    /**
+     * Path from the root down to and including the node.
+     */
+    public List<Node> getPath(Node node) {
+        LinkedList<Node> path = new LinkedList<>();
+        for (Node current = node; current != null; current = current.parentId != null ? byId.get(current.parentId) : null) {
+            path.addFirst(current);
+        }
+        return path;
+    }
+    
+    /**
+     * The node and all of its descendants, in pre-order.
+     */
+    public List<Node> getSubtree(Node node) {
+        return preorder.subList(node.pre, node.last + 1);
+    }
+    
+    /**
+     * Whether {@code node} is {@code ancestor} or one of its descendants.
+     */
+    public boolean isWithin(Node node, Node ancestor) {
+        return node.pre >= ancestor.pre && node.pre <= ancestor.last;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ecommerce.services;
+
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.repositories.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Service that holds the current category tree snapshot.
+ * The tree is loaded with a single query and swapped atomically after every
+ * committed category change, so readers never see a partially built tree.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CategoryTreeService {
+    
+    private final CategoryRepository categoryRepository;
+    
+    private volatile CategoryTree tree;
+    
+    /**
+     * Get the current tree, loading it on first use.
+     */
+    public CategoryTree getTree() {
+        CategoryTree current = tree;
+        return current != null ? current : rebuild();
+    }
+    
+    /**
+     * Rebuild once a category change commits.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+    
+    /**
+     * Load all categories and swap in a new tree.
+     */
+    public synchronized CategoryTree rebuild() {
+        CategoryTree rebuilt = CategoryTree.build(categoryRepository.findAll());
+        tree = rebuilt;
+        log.debug("Category tree rebuilt with {} categories", rebuilt.getPreorder().size());
+        return rebuilt;
+    }
+}
@@ -0,0 +1,224 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.VersionStamp;
+import com.ecommerce.entities.Category;
+import com.ecommerce.entities.Product;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.repositories.CartRepository;
+import com.ecommerce.repositories.CategoryRepository;
+import com.ecommerce.repositories.OrderRepository;
+import com.ecommerce.repositories.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Service that answers "which version of this resource is current" without
+ * loading entities or building DTOs, so conditional requests can be answered
+ * with 304 cheaply.
+ * 
+ * ETags are derived from the optimistic-lock versions of every entity a
+ * representation embeds. Product and category lookups are cached and dropped
+ * by the same change events as the DTO caches; carts and orders are per-user
+ * and are looked up with a single projection query.
+ */
+@Service
+public class EntityVersionService {
+    
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final CartRepository cartRepository;
+    private final OrderRepository orderRepository;
+    private final Cache<Long, VersionStamp> productVersionCache;
+    private final Cache<Long, VersionStamp> categoryVersionCache;
+    
+    public EntityVersionService(ProductRepository productRepository,
+                                CategoryRepository categoryRepository,
+                                CartRepository cartRepository,
+                                OrderRepository orderRepository,
+                                @Qualifier("productVersionCache") Cache<Long, VersionStamp> productVersionCache,
+                                @Qualifier("categoryVersionCache") Cache<Long, VersionStamp> categoryVersionCache) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.cartRepository = cartRepository;
+        this.orderRepository = orderRepository;
+        this.productVersionCache = productVersionCache;
+        this.categoryVersionCache = categoryVersionCache;
+    }
+    
+    /**
+     * Current version of a product, or null if it does not exist.
+     */
+    public VersionStamp getProductVersion(Long id) {
+        return productVersionCache.get(id, key -> {
+            List<Object[]> rows = productRepository.findVersionById(key);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            Object[] row = rows.get(0);
+            return productStamp(key, (Long) row[0], (LocalDateTime) row[1],
+                    (Long) row[2], (Long) row[3], (LocalDateTime) row[4]);
+        });
+    }
+    
+    /**
+     * Version of a loaded product, for If-Match checks inside the updating transaction.
+     * The category must be loaded with it.
+     */
+    public VersionStamp getProductVersion(Product product) {
+        Category category = product.getCategory();
+        return productStamp(product.getId(), product.getVersion(), product.getUpdatedAt(),
+                category != null ? category.getId() : null,
+                category != null ? category.getVersion() : null,
+                category != null ? category.getUpdatedAt() : null);
+    }
+    
+    /**
+     * Current version of a category, or null if it does not exist.
+     */
+    public VersionStamp getCategoryVersion(Long id) {
+        return categoryVersionCache.get(id, key -> {
+            List<Object[]> rows = categoryRepository.findVersionById(key);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            Object[] row = rows.get(0);
+            return categoryStamp(key, (Long) row[0], (LocalDateTime) row[1], (Long) row[2], (LocalDateTime) row[3]);
+        });
+    }
+    
+    /**
+     * Version of a loaded category, for If-Match checks inside the updating transaction.
+     * The parent must be loaded with it.
+     */
+    public VersionStamp getCategoryVersion(Category category) {
+        Category parent = category.getParent();
+        return categoryStamp(category.getId(), category.getVersion(), category.getUpdatedAt(),
+                parent != null ? parent.getVersion() : null,
+                parent != null ? parent.getUpdatedAt() : null);
+    }
+    
+    /**
+     * Current version of a user's cart, or null if the user has no cart yet.
+     */
+    public VersionStamp getCartVersion(Long userId) {
+        List<Object[]> rows = cartRepository.findVersionsByUserId(userId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        StringBuilder tag = new StringBuilder("cart:").append(userId).append(':').append(rows.get(0)[0]);
+        long lastModified = toMillis((LocalDateTime) rows.get(0)[1]);
+        for (Object[] row : sortedByProduct(rows, 2)) {
+            if (row[2] != null) {
+                tag.append(':').append(row[2]).append('@').append(row[3]);
+                lastModified = Math.max(lastModified, toMillis((LocalDateTime) row[4]));
+            }
+        }
+        return new VersionStamp(etag(tag.toString()), lastModified, userId);
+    }
+    
+    /**
+     * Current version of an order, or null if it does not exist.
+     */
+    public VersionStamp getOrderVersion(Long orderId) {
+        List<Object[]> rows = orderRepository.findVersionsById(orderId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Long ownerId = (Long) rows.get(0)[0];
+        StringBuilder tag = new StringBuilder("order:").append(orderId).append(':').append(rows.get(0)[1]);
+        long lastModified = toMillis((LocalDateTime) rows.get(0)[2]);
+        for (Object[] row : sortedByProduct(rows, 3)) {
+            if (row[3] != null) {
+                tag.append(':').append(row[3]).append('@').append(row[4]);
+                lastModified = Math.max(lastModified, toMillis((LocalDateTime) row[5]));
+            }
+        }
+        return new VersionStamp(etag(tag.toString()), lastModified, ownerId);
+    }
+    
+    /**
+     * Whether an If-Match header is satisfied by the current version.
+     * A missing header always matches; "*" matches any existing resource.
+     */
+    public static boolean matchesIfMatch(String ifMatch, VersionStamp current) {
+        if (ifMatch == null) {
+            return true;
+        }
+        if (current == null) {
+            return false;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(current.getEtag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        productVersionCache.invalidate(event.getProduct().getId());
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        productVersionCache.invalidateAll(event.getProducts().stream()
+                .map(product -> product.getId())
+                .collect(Collectors.toList()));
+    }
+    
+    /**
+     * Products embed their category's name and categories their parent's, so a
+     * category change drops every cached version. Category changes are rare.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        categoryVersionCache.invalidateAll();
+        productVersionCache.invalidateAll();
+    }
+    
+    private VersionStamp productStamp(Long id, Long version, LocalDateTime updatedAt,
+                                      Long categoryId, Long categoryVersion, LocalDateTime categoryUpdatedAt) {
+        String tag = "product:" + id + ":" + version + ":" + categoryId + "@" + categoryVersion;
+        return new VersionStamp(etag(tag), Math.max(toMillis(updatedAt), toMillis(categoryUpdatedAt)), null);
+    }
+    
+    private VersionStamp categoryStamp(Long id, Long version, LocalDateTime updatedAt,
+                                       Long parentVersion, LocalDateTime parentUpdatedAt) {
+        String tag = "category:" + id + ":" + version + ":" + parentVersion;
+        return new VersionStamp(etag(tag), Math.max(toMillis(updatedAt), toMillis(parentUpdatedAt)), null);
+    }
+    
+    private static List<Object[]> sortedByProduct(List<Object[]> rows, int productIdColumn) {
+        List<Object[]> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(row -> (Long) row[productIdColumn],
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return sorted;
+    }
+    
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+    
+    private static String etag(String tag) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(tag.getBytes(StandardCharsets.UTF_8));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Background job that evens out the stock shards of hot products and copies their
+ * totals to the products rows, so listings and caches show the current stock.
+ * Each product is rebalanced in its own short transaction.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotStockRebalancer {
+    
+    private final HotStockService hotStockService;
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final CatalogChangeService catalogChangeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Scheduled(fixedDelayString = "${inventory.hot-stock.rebalance-interval:2000}")
+    public void rebalance() {
+        hotStockService.refreshHotProducts();
+        List<Long> changed = new ArrayList<>();
+        for (Long productId : hotStockService.getHotProductIds()) {
+            try {
+                Boolean rowChanged = transactionTemplate.execute(status -> {
+                    if (!hotStockService.rebalance(productId)) {
+                        return false;
+                    }
+                    catalogChangeService.recordProductChanges(List.of(productId));
+                    return true;
+                });
+                if (Boolean.TRUE.equals(rowChanged)) {
+                    changed.add(productId);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to rebalance stock shards of product {}: {}", productId, e.getMessage());
+            }
+        }
+        
+        // Outside a transaction the listeners run immediately
+        if (!changed.isEmpty()) {
+            List<ProductDTO> products = productRepository.findAllWithCategoryByIdIn(changed).stream()
+                    .map(productService::toDTO)
+                    .collect(Collectors.toList());
+            eventPublisher.publishEvent(new ProductsChangedEvent(products));
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.ecommerce.services;
+
+import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.repositories.ProductJdbcRepository;
+import com.ecommerce.repositories.StockShardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the optional "hot SKU" stock mode used during promotions.
+ * 
+ * A hot product's stock is split across N shard rows, so concurrent checkouts
+ * decrement different rows instead of queueing on the products row. The products
+ * row keeps the total for display and is refreshed by {@link HotStockRebalancer},
+ * which also evens out the shards. Checkouts go through {@link #decrementStock},
+ * which works for products in either mode.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotStockService {
+    
+    public static final int MAX_SHARDS = 64;
+    
+    private final StockShardRepository stockShardRepository;
+    private final ProductJdbcRepository productJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    /** Shard count per hot product, as last read from the table. */
+    private volatile Map<Long, Integer> shardCounts = Collections.emptyMap();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refreshHotProducts();
+    }
+    
+    public boolean isHot(Long productId) {
+        return shardCounts.containsKey(productId);
+    }
+    
+    public Set<Long> getHotProductIds() {
+        return shardCounts.keySet();
+    }
+    
+    /**
+     * Re-read which products are hot, picking up mode changes made on other nodes.
+     */
+    public void refreshHotProducts() {
+        shardCounts = Map.copyOf(stockShardRepository.findShardCounts());
+    }
+    
+    /**
+     * Current stock of each product for a checkout. The products rows of products that
+     * keep their stock there are locked in id order until the caller's transaction
+     * ends, so nothing else can take their stock or hold it meanwhile; hot products
+     * are summed from their shards without locking them. Missing products are left out.
+     */
+    public Map<Long, Integer> lockStock(Collection<Long> productIds) {
+        List<Long> hot = productIds.stream().filter(this::isHot).collect(Collectors.toList());
+        Map<Long, Integer> sharded = hot.isEmpty() ? Collections.emptyMap() : stockShardRepository.sumShards(hot);
+        // Products that left hot mode on another node are read from their row
+        List<Long> rows = productIds.stream()
+                .filter(productId -> !sharded.containsKey(productId))
+                .sorted()
+                .collect(Collectors.toList());
+        Map<Long, Integer> stock = productJdbcRepository.lockStock(rows);
+        stock.putAll(sharded);
+        return stock;
+    }
+    
+    /**
+     * Take stock from a product only if enough is left, in the caller's transaction.
+     * The in-memory mode is only a hint: a product whose mode changed on another node
+     * is still decremented where its stock actually lives.
+     * 
+     * @return false if the product has less than quantity in stock
+     */
+    public boolean decrementStock(Long productId, int quantity) {
+        return decrementStock(productId, quantity, 0);
+    }
+    
+    /**
+     * Take stock from a product only if enough is left over and above the quantity
+     * reserved for other checkouts, in the caller's transaction.
+     * 
+     * @return false if the product has less than reserved plus quantity in stock
+     */
+    public boolean decrementStock(Long productId, int quantity, int reserved) {
+        if (!isHot(productId) && productJdbcRepository.decrementStock(productId, quantity, reserved)) {
+            return true;
+        }
+        int start = 0;
+        if (reserved == 0) {
+            // Pick a shard from an unlocked read, so that a checkout starts on a shard
+            // that can serve it
+            int[] probe = stockShardRepository.readShards(productId);
+            if (probe.length == 0) {
+                return isHot(productId) && productJdbcRepository.decrementStock(productId, quantity, 0);
+            }
+            start = pickShard(probe, quantity);
+            if (start < 0) {
+                return false;
+            }
+            if (probe[start] >= quantity && stockShardRepository.decrementShard(productId, start, quantity)) {
+                return true;
+            }
+        }
+        
+        // Even a miss leaves the start shard locked, so only shards above it may be
+        // locked now; a lower one could be held by a checkout waiting for this one.
+        // Holds are checked against the total, so then every shard is locked.
+        int[] shards = stockShardRepository.lockShards(productId, start);
+        if (shards.length == 0) {
+            return isHot(productId) && productJdbcRepository.decrementStock(productId, quantity, reserved);
+        }
+        if (sum(shards) - reserved < quantity) {
+            return false;
+        }
+        int remaining = quantity;
+        for (int i = 0; i < shards.length && remaining > 0; i++) {
+            int taken = Math.min(shards[i], remaining);
+            shards[i] -= taken;
+            remaining -= taken;
+        }
+        stockShardRepository.updateShards(productId, start, shards);
+        return true;
+    }
+    
+    /**
+     * A random shard holding at least quantity, or else the highest shard from which
+     * the shards up to the last hold quantity together; -1 if all of them hold less.
+     */
+    private static int pickShard(int[] shards, int quantity) {
+        int candidates = 0;
+        for (int shard : shards) {
+            if (shard >= quantity) {
+                candidates++;
+            }
+        }
+        if (candidates > 0) {
+            int pick = ThreadLocalRandom.current().nextInt(candidates);
+            for (int shard = 0; shard < shards.length; shard++) {
+                if (shards[shard] >= quantity && pick-- == 0) {
+                    return shard;
+                }
+            }
+        }
+        int total = 0;
+        for (int shard = shards.length - 1; shard >= 0; shard--) {
+            total += shards[shard];
+            if (total >= quantity) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Take stock for several products in the caller's transaction, after their rows
+     * were locked by {@link #lockStock}. Products that keep their stock on the products
+     * row are updated in one JDBC batch, then hot products in id order, so concurrent
+     * checkouts lock shards in the same order.
+     * 
+     * @param reserved quantity reserved for other checkouts per product id; missing means none
+     * @return id of the first product with less stock than asked for, or null if every
+     *         quantity was taken
+     */
+    public Long decrementStock(SortedMap<Long, Integer> quantities, Map<Long, Integer> reserved) {
+        SortedMap<Long, Integer> rows = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (!isHot(productId)) {
+                rows.put(productId, quantity);
+            }
+        });
+        Set<Long> missed = new HashSet<>(productJdbcRepository.decrementStock(rows, reserved));
+        if (!missed.isEmpty()) {
+            refreshHotProducts();
+        }
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Long productId = line.getKey();
+            if (rows.containsKey(productId)) {
+                // A miss is either too little stock or a product that went hot on another node
+                if (!missed.contains(productId)) {
+                    continue;
+                }
+                if (!isHot(productId)) {
+                    return productId;
+                }
+            }
+            if (!decrementStock(productId, line.getValue(), reserved.getOrDefault(productId, 0))) {
+                return productId;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Current stock of a hot product as the sum of its shards, or null if it is not hot.
+     * Reads without locking the shards.
+     */
+    public Integer getShardedStock(Long productId) {
+        return stockShardRepository.sumShards(productId);
+    }
+    
+    /**
+     * Current stock of each hot product among the given ones, summed in one query.
+     * Other products are left out.
+     */
+    public Map<Long, Integer> getShardedStock(Collection<Long> productIds) {
+        List<Long> hot = productIds.stream().filter(this::isHot).collect(Collectors.toList());
+        return hot.isEmpty() ? Collections.emptyMap() : stockShardRepository.sumShards(hot);
+    }
+    
+    /**
+     * Move a product's stock into shards (admin only). Re-enabling changes the shard count.
+     */
+    public void enable(Long productId, int shardCount) {
+        if (shardCount < 2 || shardCount > MAX_SHARDS) {
+            throw new BadRequestException("Shard count must be between 2 and " + MAX_SHARDS);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // Shards before the products row, like every other writer
+            int[] existing = stockShardRepository.lockShards(productId);
+            Integer stock = productJdbcRepository.lockStock(productId);
+            if (stock == null) {
+                throw new ResourceNotFoundException("Product", "id", productId);
+            }
+            int total = existing.length > 0 ? sum(existing) : stock;
+            stockShardRepository.deleteShards(productId);
+            stockShardRepository.insertShards(productId, spread(total, shardCount));
+            productJdbcRepository.setStock(productId, total);
+        });
+        refreshHotProducts();
+        log.info("Product {} stock split across {} shards", productId, shardCount);
+    }
+    
+    /**
+     * Fold a product's shards back into the products row (admin only).
+     */
+    public void disable(Long productId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] shards = stockShardRepository.lockShards(productId);
+            if (shards.length == 0) {
+                return;
+            }
+            stockShardRepository.deleteShards(productId);
+            productJdbcRepository.setStock(productId, sum(shards));
+        });
+        refreshHotProducts();
+        log.info("Product {} stock back on the products row", productId);
+    }
+    
+    /**
+     * Spread a new stock level over a hot product's shards in the caller's transaction,
+     * after an admin or bulk update set the products row. Does nothing for other products.
+     */
+    public void resetStock(Long productId, int stock) {
+        int[] shards = stockShardRepository.lockShards(productId);
+        if (shards.length > 0) {
+            stockShardRepository.updateShards(productId, spread(stock, shards.length));
+        }
+    }
+    
+    /**
+     * Even out a hot product's shards and copy their total to the products row, in the
+     * caller's transaction.
+     * 
+     * @return true if the products row changed
+     */
+    public boolean rebalance(Long productId) {
+        int[] shards = stockShardRepository.lockShards(productId);
+        if (shards.length == 0) {
+            return false;
+        }
+        int total = sum(shards);
+        int[] even = spread(total, shards.length);
+        if (!Arrays.equals(shards, even)) {
+            stockShardRepository.updateShards(productId, even);
+        }
+        return productJdbcRepository.setStock(productId, total);
+    }
+    
+    private static int[] spread(int total, int shardCount) {
+        int[] shards = new int[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards[shard] = total / shardCount + (shard < total % shardCount ? 1 : 0);
+        }
+        return shards;
+    }
+    
+    private static int sum(int[] shards) {
+        int total = 0;
+        for (int quantity : shards) {
+            total += quantity;
+        }
+        return total;
+    }
+}
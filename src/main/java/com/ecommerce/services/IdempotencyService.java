@@ -0,0 +1,299 @@
+package com.ecommerce.services;
+
+import com.ecommerce.entities.IdempotencyRecord;
+import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.exceptions.ConflictException;
+import com.ecommerce.repositories.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Service that makes non-idempotent requests safe to retry with an Idempotency-Key header.
+ * 
+ * The first request with a key claims it with a row in idempotency_keys, runs, and
+ * stores its response in the same transaction as its own writes, so a committed
+ * action always has its response stored; retries with the same key get the stored
+ * response back without running again. Completed responses are kept in a bounded
+ * near-cache in front of the table. A duplicate arriving while the first request is
+ * still running waits for its result: on the same node through an in-flight future,
+ * on another node by polling the row. Failed requests release their key, so the
+ * client can retry them. A claim is only leased: if its request neither completes
+ * nor releases it in time, e.g. because its node died, a retry takes the key over,
+ * and the old request can then no longer commit.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    
+    /** Leaves room for the prefix PaymentService adds to the key it passes on to Stripe. */
+    private static final int MAX_KEY_LENGTH = 200;
+    private static final long POLL_INTERVAL_MS = 100;
+    
+    private final IdempotencyRecordRepository recordRepository;
+    private final Cache<String, IdempotencyRecord> idempotencyCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+    
+    @Value("${idempotency.ttl:24h}")
+    private Duration ttl;
+    
+    @Value("${idempotency.wait-timeout:30s}")
+    private Duration waitTimeout;
+    
+    @Value("${idempotency.lease:20s}")
+    private Duration lease;
+    
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              @Qualifier("idempotencyCache") Cache<String, IdempotencyRecord> idempotencyCache,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper) {
+        this.recordRepository = recordRepository;
+        this.idempotencyCache = idempotencyCache;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * Run an operation at most once per user and key, answering retries with the
+     * stored response. Without a key the operation simply runs.
+     * 
+     * @param operation name of the endpoint, so one key can be used on different endpoints
+     * @param request   request payload; a retry with a different payload is rejected
+     * @param status    status of a successful response
+     */
+    public <T> ResponseEntity<T> execute(Long userId, String operation, String key, Object request,
+                                         HttpStatus status, Class<T> type, Supplier<T> action) {
+        if (key == null) {
+            return ResponseEntity.status(status).body(action.get());
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String cacheKey = userId + ":" + operation + ":" + key;
+        String requestHash = hash(request);
+        
+        while (true) {
+            IdempotencyRecord cached = idempotencyCache.getIfPresent(cacheKey);
+            if (cached != null) {
+                return replay(cached, requestHash, type);
+            }
+            
+            CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+            CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(cacheKey, mine);
+            if (running != null) {
+                IdempotencyRecord completed = await(running);
+                if (completed != null) {
+                    return replay(completed, requestHash, type);
+                }
+                // The first request failed and released the key; try again as the owner
+                continue;
+            }
+            
+            try {
+                IdempotencyRecord record = claim(userId, operation, key, requestHash);
+                if (record.isCompleted()) {
+                    mine.complete(record);
+                    idempotencyCache.put(cacheKey, record);
+                    return replay(record, requestHash, type);
+                }
+                T body = runAndStore(record, status, action, mine, cacheKey);
+                return ResponseEntity.status(status).body(body);
+            } catch (RuntimeException e) {
+                mine.complete(null);
+                throw e;
+            } finally {
+                inFlight.remove(cacheKey, mine);
+            }
+        }
+    }
+    
+    /**
+     * Delete records past their TTL.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval:3600000}")
+    public void purgeExpired() {
+        Integer purged = transactionTemplate.execute(status ->
+                recordRepository.deleteExpired(LocalDateTime.now()));
+        if (purged != null && purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+    
+    /**
+     * Claim the key with a leased in-progress row. If another request already holds
+     * it, wait until that request completes and return its record, or take the key
+     * over once that request's lease has run out.
+     * 
+     * @return the completed record to replay, or the in-progress record this request now owns
+     */
+    private IdempotencyRecord claim(Long userId, String operation, String key, String requestHash) {
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeout.toMillis();
+        while (true) {
+            try {
+                return transactionTemplate.execute(status -> recordRepository.saveAndFlush(
+                        IdempotencyRecord.builder()
+                                .userId(userId)
+                                .operation(operation)
+                                .idempotencyKey(key)
+                                .requestHash(requestHash)
+                                .ownerToken(owner)
+                                .leaseExpiresAt(LocalDateTime.now().plus(lease))
+                                .expiresAt(LocalDateTime.now().plus(ttl))
+                                .build()));
+            } catch (DataIntegrityViolationException e) {
+                // Held by a request on another node, or completed earlier
+            }
+            IdempotencyRecord existing = recordRepository
+                    .findByUserIdAndOperationAndIdempotencyKey(userId, operation, key)
+                    .orElse(null);
+            if (existing != null && existing.isCompleted()) {
+                return existing;
+            }
+            if (existing != null && !existing.getRequestHash().equals(requestHash)) {
+                throw new BadRequestException(HEADER + " was already used with a different request");
+            }
+            if (existing != null && takeOver(existing, owner)) {
+                log.info("Took over idempotency key {} for {} after its lease ran out", key, operation);
+                return existing;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new ConflictException("A request with this " + HEADER + " is still in progress");
+            }
+            sleep(POLL_INTERVAL_MS);
+        }
+    }
+    
+    /**
+     * Take over an in-progress key whose lease has run out, updating the record to match.
+     */
+    private boolean takeOver(IdempotencyRecord record, String owner) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseExpiresAt = now.plus(lease);
+        Integer updated = transactionTemplate.execute(status ->
+                recordRepository.takeOver(record.getId(), owner, leaseExpiresAt, now));
+        if (updated == null || updated == 0) {
+            return false;
+        }
+        record.setOwnerToken(owner);
+        record.setLeaseExpiresAt(leaseExpiresAt);
+        return true;
+    }
+    
+    /**
+     * Run the action and store its response in one transaction, which the action's own
+     * transactional writes join. If the key was taken over meanwhile, nothing commits.
+     */
+    private <T> T runAndStore(IdempotencyRecord claimed, HttpStatus status, Supplier<T> action,
+                              CompletableFuture<IdempotencyRecord> mine, String cacheKey) {
+        T body;
+        try {
+            body = transactionTemplate.execute(tx -> {
+                T result = action.get();
+                String json;
+                try {
+                    json = objectMapper.writeValueAsString(result);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Failed to store idempotent response", e);
+                }
+                if (recordRepository.complete(claimed.getId(), claimed.getOwnerToken(), status.value(), json) == 0) {
+                    throw new ConflictException("A retry took over this " + HEADER + " after the request ran too long");
+                }
+                claimed.setStatusCode(status.value());
+                claimed.setResponseBody(json);
+                claimed.setLeaseExpiresAt(null);
+                return result;
+            });
+        } catch (RuntimeException e) {
+            release(claimed);
+            throw e;
+        }
+        idempotencyCache.put(cacheKey, claimed);
+        mine.complete(claimed);
+        return body;
+    }
+    
+    private void release(IdempotencyRecord claimed) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    recordRepository.release(claimed.getId(), claimed.getOwnerToken()));
+        } catch (RuntimeException e) {
+            // The lease runs out and a retry takes the key over
+            log.warn("Failed to release idempotency key {} for {}: {}",
+                    claimed.getIdempotencyKey(), claimed.getOperation(), e.getMessage());
+        }
+    }
+    
+    private <T> ResponseEntity<T> replay(IdempotencyRecord record, String requestHash, Class<T> type) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new BadRequestException(HEADER + " was already used with a different request");
+        }
+        try {
+            return ResponseEntity.status(record.getStatusCode())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(objectMapper.readValue(record.getResponseBody(), type));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read stored idempotent response", e);
+        }
+    }
+    
+    /**
+     * Wait for the request running on this node. Returns null if it failed.
+     */
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this " + HEADER + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting for a request with the same " + HEADER);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+    
+    private String hash(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Request cannot be fingerprinted");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting for a request with the same " + HEADER);
+        }
+    }
+}
@@ -2,17 +2,28 @@ package com.ecommerce.services;
 
 import com.ecommerce.dto.*;
 import com.ecommerce.entities.*;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.events.ProductsSoldEvent;
 import com.ecommerce.exceptions.BadRequestException;
 import com.ecommerce.exceptions.ResourceNotFoundException;
 import com.ecommerce.repositories.AddressRepository;
+import com.ecommerce.repositories.CartItemRepository;
 import com.ecommerce.repositories.OrderRepository;
 import com.ecommerce.repositories.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -24,20 +35,151 @@ public class OrderService {
     
     private final OrderRepository orderRepository;
     private final AddressRepository addressRepository;
+    private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
+    private final HotStockService hotStockService;
+    private final CatalogChangeService catalogChangeService;
+    private final StockReservationService stockReservationService;
     private final CartService cartService;
+    private final ProductService productService;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
-     * Create order from cart.
+     * Create order from cart. Stock is taken with one conditional update per product,
+     * so concurrent checkouts can never oversell.
      */
     @Transactional
     public OrderDTO createOrder(User user, CreateOrderRequest request) {
-        Cart cart = cartService.getCartEntity(user);
+        return createOrders(List.of(user), List.of(request)).get(0);
+    }
+    
+    /**
+     * Create the orders of several checkouts in one transaction. Their lines are summed
+     * per product and the stock is taken once for all of them, so the group locks its
+     * products in id order like a single checkout does. One short line fails them all.
+     * 
+     * @param users   one distinct user per checkout
+     * @param requests the request of each checkout, in the same order
+     * @return the orders in the same order
+     */
+    @Transactional
+    public List<OrderDTO> createOrders(List<User> users, List<CreateOrderRequest> requests) {
+        if (users.size() != requests.size()) {
+            throw new IllegalArgumentException("Expected one request per user");
+        }
+        if (users.stream().map(User::getId).distinct().count() != users.size()) {
+            throw new IllegalArgumentException("Each user can only check out once per group");
+        }
+        List<Cart> carts = new ArrayList<>(users.size());
+        List<Order> orders = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            Cart cart = cartService.getCartEntity(user);
+            
+            if (cart.getItems().isEmpty()) {
+                throw new BadRequestException("Cart is empty");
+            }
+            
+            Address shippingAddress = getShippingAddress(user, requests.get(i));
+            
+            // Create order
+            Order order = Order.builder()
+                    .user(user)
+                    .shippingAddress(shippingAddress)
+                    .status(OrderStatus.PENDING)
+                    .build();
+            
+            // Add items and calculate total
+            BigDecimal total = BigDecimal.ZERO;
+            for (CartItem cartItem : cart.getItems()) {
+                OrderItem orderItem = OrderItem.fromCartItem(cartItem);
+                order.addItem(orderItem);
+                total = total.add(orderItem.getSubtotal());
+            }
+            order.setTotalAmount(total);
+            carts.add(cart);
+            orders.add(order);
+        }
+        
+        takeStock(users, carts);
         
-        if (cart.getItems().isEmpty()) {
+        List<OrderDTO> created = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orderRepository.save(orders.get(i));
+            
+            // Clear cart
+            cartService.clearCart(carts.get(i));
+            
+            created.add(toDTO(order));
+        }
+        return created;
+    }
+    
+    /**
+     * Cheap checks run before an async checkout is queued, so that requests which
+     * can never succeed are rejected right away. createOrder repeats them.
+     */
+    public void validateCheckout(User user, CreateOrderRequest request) {
+        if (!cartItemRepository.existsByCartUserId(user.getId())) {
             throw new BadRequestException("Cart is empty");
         }
+        getShippingAddress(user, request);
+    }
+    
+    /**
+     * Which of a group of checkouts can be served from the stock left, net of other
+     * checkouts' holds and of what the earlier checkouts of the group will take. Async
+     * checkout commits only these together, so that one short line does not roll back
+     * and re-run the whole group. Reads without locks; createOrder still takes the
+     * stock with conditional updates.
+     * 
+     * @param userIds owner of each checkout, in the order they will be committed
+     * @return whether each checkout fits; a repeated user never does, as the first
+     *         checkout empties the cart
+     */
+    @Transactional(readOnly = true)
+    public boolean[] fitStock(List<Long> userIds) {
+        Set<Long> distinctUsers = new HashSet<>(userIds);
+        Map<Long, Map<Long, Integer>> carts = new HashMap<>();
+        for (Object[] row : cartItemRepository.sumQuantityByUserAndProduct(distinctUsers)) {
+            carts.computeIfAbsent((Long) row[0], key -> new HashMap<>())
+                    .put((Long) row[1], ((Number) row[2]).intValue());
+        }
+        Set<Long> productIds = new HashSet<>();
+        carts.values().forEach(cart -> productIds.addAll(cart.keySet()));
+        Map<Long, Integer> left = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            Map<Long, Integer> shardedStock = hotStockService.getShardedStock(productIds);
+            for (Object[] row : productRepository.findStockByIdIn(productIds)) {
+                Long productId = (Long) row[0];
+                Integer sharded = shardedStock.get(productId);
+                left.put(productId, (sharded != null ? sharded : (Integer) row[1])
+                        - stockReservationService.getReservedQuantity(productId));
+            }
+        }
+        Map<Long, Map<Long, Integer>> holds = stockReservationService.getHeldQuantities(distinctUsers);
         
+        boolean[] fits = new boolean[userIds.size()];
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < fits.length; i++) {
+            Long userId = userIds.get(i);
+            Map<Long, Integer> cart = carts.get(userId);
+            if (cart == null || !seen.add(userId)) {
+                continue;
+            }
+            Map<Long, Integer> own = holds.getOrDefault(userId, Map.of());
+            fits[i] = cart.entrySet().stream().allMatch(line ->
+                    left.getOrDefault(line.getKey(), 0) + own.getOrDefault(line.getKey(), 0) >= line.getValue());
+            if (fits[i]) {
+                // The checkout takes its lines and gives back its own holds
+                cart.forEach((productId, quantity) ->
+                        left.merge(productId, own.getOrDefault(productId, 0) - quantity, Integer::sum));
+            }
+        }
+        return fits;
+    }
+    
+    private Address getShippingAddress(User user, CreateOrderRequest request) {
         Address shippingAddress = addressRepository.findById(request.getShippingAddressId())
                 .orElseThrow(() -> new ResourceNotFoundException("Address", "id", request.getShippingAddressId()));
         
@@ -45,42 +187,71 @@ public class OrderService {
         if (!shippingAddress.getUser().getId().equals(user.getId())) {
             throw new BadRequestException("Address does not belong to you");
         }
-        
-        // Create order
-        Order order = Order.builder()
-                .user(user)
-                .shippingAddress(shippingAddress)
-                .status(OrderStatus.PENDING)
-                .build();
-        
-        // Add items and calculate total
-        BigDecimal total = BigDecimal.ZERO;
-        for (CartItem cartItem : cart.getItems()) {
-            Product product = cartItem.getProduct();
-            
-            // Validate stock
-            if (product.getStockQuantity() < cartItem.getQuantity()) {
-                throw new BadRequestException("Insufficient stock for: " + product.getName());
+        return shippingAddress;
+    }
+    
+    /**
+     * Take the stock for every line of the given carts. The users' checkout holds are
+     * claimed, and stock held by other checkouts is off limits. The products rows are
+     * locked first, in id order, so that holds are checked against the stock being
+     * taken and concurrent checkouts cannot deadlock; the quantity held by others is
+     * passed into each conditional decrement, so the write itself enforces it. A line
+     * that cannot be served fails the checkout and rolls back the rest.
+     */
+    private void takeStock(List<User> users, List<Cart> carts) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
+        for (Cart cart : carts) {
+            for (CartItem cartItem : cart.getItems()) {
+                Product product = cartItem.getProduct();
+                quantities.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
+                products.put(product.getId(), product);
             }
-            
-            // Create order item
-            OrderItem orderItem = OrderItem.fromCartItem(cartItem);
-            order.addItem(orderItem);
-            
-            total = total.add(orderItem.getSubtotal());
-            
-            // Reduce stock
-            product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
-            productRepository.save(product);
         }
         
-        order.setTotalAmount(total);
-        order = orderRepository.save(order);
-        
-        // Clear cart
-        cartService.clearCart(user);
+        // Hold rows are locked per user, so claim them in user id order too
+        Map<Long, Integer> ownHolds = new HashMap<>();
+        users.stream()
+                .map(User::getId)
+                .sorted()
+                .forEach(userId -> stockReservationService.claimHolds(userId).forEach(
+                        (productId, quantity) -> ownHolds.merge(productId, quantity, Integer::sum)));
+        Map<Long, Integer> stock = hotStockService.lockStock(quantities.keySet());
+        Map<Long, Integer> reserved = new HashMap<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            int heldByOthers = Math.max(0, stockReservationService.getReservedQuantity(line.getKey())
+                    - ownHolds.getOrDefault(line.getKey(), 0));
+            int unreserved = stock.getOrDefault(line.getKey(), 0) - heldByOthers;
+            if (unreserved < line.getValue()) {
+                throw new BadRequestException(heldByOthers > 0
+                        ? "Only " + Math.max(0, unreserved) + " available for: " + product.getName()
+                                + " (product " + product.getId() + ", requested " + line.getValue()
+                                + "); the rest is held by other checkouts"
+                        : "Insufficient stock for: " + product.getName()
+                                + " (product " + product.getId() + ", requested " + line.getValue() + ")");
+            }
+            reserved.put(line.getKey(), heldByOthers);
+        }
+        Long shortId = hotStockService.decrementStock(quantities, reserved);
+        if (shortId != null) {
+            Product product = products.get(shortId);
+            throw new BadRequestException("Insufficient stock for: " + product.getName()
+                    + " (product " + product.getId() + ", requested " + quantities.get(shortId) + ")");
+        }
         
-        return toDTO(order);
+        // The loaded entities still hold the old stock; publish the values just written
+        List<ProductDTO> changed = new ArrayList<>(products.size());
+        Map<Long, Integer> shardedStock = hotStockService.getShardedStock(quantities.keySet());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            ProductDTO dto = productService.toDTO(products.get(line.getKey()));
+            Integer sharded = shardedStock.get(line.getKey());
+            dto.setStockQuantity(sharded != null ? sharded : stock.get(line.getKey()) - line.getValue());
+            changed.add(dto);
+        }
+        catalogChangeService.recordProductChanges(quantities.keySet());
+        eventPublisher.publishEvent(new ProductsChangedEvent(changed));
+        eventPublisher.publishEvent(new ProductsSoldEvent(quantities));
     }
     
     /**
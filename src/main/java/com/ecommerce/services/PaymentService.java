@@ -7,6 +7,7 @@ import com.ecommerce.exceptions.BadRequestException;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
@@ -34,6 +35,14 @@ public class PaymentService {
      * Create a payment intent for an order.
      */
     public PaymentIntentResponse createPaymentIntent(Long orderId) {
+        return createPaymentIntent(orderId, null);
+    }
+    
+    /**
+     * Create a payment intent for an order, passing the client's idempotency key on to
+     * Stripe so that a retry after a lost response never creates a second intent.
+     */
+    public PaymentIntentResponse createPaymentIntent(Long orderId, String idempotencyKey) {
         Order order = orderService.getOrderEntityById(orderId);
         
         if (order.getStatus() != OrderStatus.PENDING) {
@@ -55,7 +64,10 @@ public class PaymentService {
                     )
                     .build();
             
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
+            RequestOptions options = idempotencyKey != null
+                    ? RequestOptions.builder().setIdempotencyKey("payment-intent:" + orderId + ":" + idempotencyKey).build()
+                    : RequestOptions.getDefault();
+            PaymentIntent paymentIntent = PaymentIntent.create(params, options);
             
             return PaymentIntentResponse.builder()
                     .clientSecret(paymentIntent.getClientSecret())
@@ -0,0 +1,207 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductBulkUpdate;
+import com.ecommerce.dto.ProductBulkUpdateResult;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.entities.Product;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.repositories.ProductJdbcRepository;
+import com.ecommerce.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service for bulk price, stock and active-flag updates such as nightly repricing
+ * and warehouse syncs.
+ * 
+ * Rows are applied in chunks: each chunk locks its products in id order, reads them
+ * with one IN query, skips rows that would not change anything and writes the rest
+ * with one batched UPDATE of only the fields each row sets, committed together with
+ * its change-log rows. The lock keeps checkouts from taking stock between the read
+ * and the write, so the published values are the ones in the database. Caches and indexes
+ * are updated with a single event once every chunk has been applied.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductBulkUpdateService {
+    
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    
+    private final ProductRepository productRepository;
+    private final ProductJdbcRepository productJdbcRepository;
+    private final ProductService productService;
+    private final CatalogChangeService catalogChangeService;
+    private final HotStockService hotStockService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${catalog.bulk-update.max-rows:50000}")
+    private int maxRows;
+    
+    @Value("${catalog.bulk-update.chunk-size:500}")
+    private int chunkSize;
+    
+    /**
+     * Apply the updates and report an outcome for every row (admin only).
+     */
+    public ProductBulkUpdateResult updateProducts(List<ProductBulkUpdate> updates) {
+        if (updates.size() > maxRows) {
+            throw new BadRequestException("At most " + maxRows + " rows can be updated at once");
+        }
+        ProductBulkUpdateResult.RowOutcome[] outcomes = new ProductBulkUpdateResult.RowOutcome[updates.size()];
+        List<Integer> pending = new ArrayList<>(updates.size());
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            ProductBulkUpdate update = updates.get(i);
+            String error = validate(update);
+            if (error == null && !seen.add(update.getId())) {
+                error = "Duplicate product id in request";
+            }
+            if (error != null) {
+                outcomes[i] = outcome(update, ProductBulkUpdateResult.Status.INVALID, error);
+            } else {
+                pending.add(i);
+            }
+        }
+        
+        List<ProductDTO> changed = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            applyChunk(updates, pending.subList(from, Math.min(from + chunkSize, pending.size())), outcomes, changed);
+        }
+        
+        // One invalidation for the whole request; outside a transaction the listeners run immediately
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new ProductsChangedEvent(changed));
+        }
+        
+        Map<ProductBulkUpdateResult.Status, Long> counts = Arrays.stream(outcomes)
+                .collect(Collectors.groupingBy(ProductBulkUpdateResult.RowOutcome::getStatus, Collectors.counting()));
+        int updated = counts.getOrDefault(ProductBulkUpdateResult.Status.UPDATED, 0L).intValue();
+        int unchanged = counts.getOrDefault(ProductBulkUpdateResult.Status.UNCHANGED, 0L).intValue();
+        log.info("Bulk product update: {} updated, {} unchanged, {} failed",
+                updated, unchanged, updates.size() - updated - unchanged);
+        return ProductBulkUpdateResult.builder()
+                .updated(updated)
+                .unchanged(unchanged)
+                .failed(updates.size() - updated - unchanged)
+                .outcomes(Arrays.asList(outcomes))
+                .build();
+    }
+    
+    /**
+     * Read, diff and write one chunk in its own transaction.
+     */
+    private void applyChunk(List<ProductBulkUpdate> updates, List<Integer> chunk,
+                            ProductBulkUpdateResult.RowOutcome[] outcomes, List<ProductDTO> changed) {
+        List<ProductDTO> chunkChanged = new ArrayList<>();
+        List<ProductBulkUpdate> chunkWrites = new ArrayList<>();
+        Map<Long, Integer> stockResets = new HashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> ids = chunk.stream()
+                        .map(index -> updates.get(index).getId())
+                        .collect(Collectors.toList());
+                productJdbcRepository.lockProducts(ids);
+                Map<Long, Product> current = productRepository.findAllWithCategoryByIdIn(ids).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+                
+                for (Integer index : chunk) {
+                    ProductBulkUpdate update = updates.get(index);
+                    Product product = current.get(update.getId());
+                    if (product == null) {
+                        outcomes[index] = outcome(update, ProductBulkUpdateResult.Status.NOT_FOUND,
+                                "Product not found");
+                        continue;
+                    }
+                    ProductDTO before = productService.toDTO(product);
+                    ProductDTO after = apply(before, update);
+                    if (sameValues(before, after)) {
+                        outcomes[index] = outcome(update, ProductBulkUpdateResult.Status.UNCHANGED, null);
+                    } else {
+                        chunkChanged.add(after);
+                        chunkWrites.add(update);
+                        // Hot products keep their stock in shards, which take the new level
+                        if (update.getStockQuantity() != null && hotStockService.isHot(update.getId())) {
+                            stockResets.put(update.getId(), update.getStockQuantity());
+                        }
+                        outcomes[index] = outcome(update, ProductBulkUpdateResult.Status.UPDATED, null);
+                    }
+                }
+                
+                productJdbcRepository.updatePriceStockAndActive(chunkWrites);
+                stockResets.forEach(hotStockService::resetStock);
+                catalogChangeService.recordProductChanges(chunkChanged.stream()
+                        .map(ProductDTO::getId)
+                        .collect(Collectors.toList()));
+            });
+        } catch (DataAccessException | TransactionException e) {
+            String message = "Chunk rolled back: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.warn("Bulk product update chunk failed: {}", message);
+            for (Integer index : chunk) {
+                outcomes[index] = outcome(updates.get(index), ProductBulkUpdateResult.Status.FAILED, message);
+            }
+            return;
+        }
+        changed.addAll(chunkChanged);
+    }
+    
+    private String validate(ProductBulkUpdate update) {
+        if (update == null || update.getId() == null) {
+            return "Product id is required";
+        }
+        if (update.getPrice() == null && update.getStockQuantity() == null && update.getActive() == null) {
+            return "Nothing to update";
+        }
+        if (update.getPrice() != null) {
+            if (update.getPrice().signum() <= 0) {
+                return "Price must be positive";
+            }
+            if (update.getPrice().scale() > 2 || update.getPrice().compareTo(MAX_PRICE) > 0) {
+                return "Price must have at most 8 integer digits and 2 decimals";
+            }
+        }
+        if (update.getStockQuantity() != null && update.getStockQuantity() < 0) {
+            return "Stock quantity must not be negative";
+        }
+        return null;
+    }
+    
+    private ProductDTO apply(ProductDTO product, ProductBulkUpdate update) {
+        return ProductDTO.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .description(product.getDescription())
+                .price(update.getPrice() != null ? update.getPrice() : product.getPrice())
+                .stockQuantity(update.getStockQuantity() != null ? update.getStockQuantity() : product.getStockQuantity())
+                .imageUrl(product.getImageUrl())
+                .categoryId(product.getCategoryId())
+                .categoryName(product.getCategoryName())
+                .isActive(update.getActive() != null ? update.getActive() : product.getIsActive())
+                .build();
+    }
+    
+    private boolean sameValues(ProductDTO before, ProductDTO after) {
+        return before.getPrice().compareTo(after.getPrice()) == 0
+                && before.getStockQuantity().equals(after.getStockQuantity())
+                && Boolean.TRUE.equals(before.getIsActive()) == Boolean.TRUE.equals(after.getIsActive());
+    }
+    
+    private ProductBulkUpdateResult.RowOutcome outcome(ProductBulkUpdate update, ProductBulkUpdateResult.Status status,
+                                                       String message) {
+        return new ProductBulkUpdateResult.RowOutcome(update != null ? update.getId() : null, status, message);
+    }
+}
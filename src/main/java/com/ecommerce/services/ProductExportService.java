@@ -0,0 +1,72 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service for streaming catalog exports to feed partners.
+ * 
+ * Products are read through a forward-only cursor and written as NDJSON straight
+ * to the response, one object per line, so memory use does not grow with the
+ * size of the catalog.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+    
+    private static final int GZIP_BUFFER_SIZE = 16 * 1024;
+    
+    private final ProductRepository productRepository;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${catalog.export.fetch-size:1000}")
+    private int fetchSize;
+    
+    /**
+     * Write every active product as NDJSON, gzip-compressed when requested.
+     */
+    @Transactional(readOnly = true)
+    public long exportActiveProducts(OutputStream output, boolean gzip) throws IOException {
+        long started = System.currentTimeMillis();
+        long written = 0;
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(output, GZIP_BUFFER_SIZE) : null;
+        OutputStream target = compressed != null ? compressed : output;
+        
+        try (Stream<ProductDTO> products = productRepository.streamActiveProducts(fetchSize);
+             SequenceWriter writer = objectMapper.writer()
+                     .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                     .withRootValueSeparator("\n")
+                     .writeValues(target)) {
+            Iterator<ProductDTO> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                written++;
+            }
+        }
+        if (written > 0) {
+            target.write('\n');
+        }
+        if (compressed != null) {
+            compressed.finish();
+        }
+        output.flush();
+        
+        log.info("Exported {} products in {} ms", written, System.currentTimeMillis() - started);
+        return written;
+    }
+}
@@ -0,0 +1,299 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductImportRow;
+import com.ecommerce.exceptions.BadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Forward-only reader of product import rows from a CSV or NDJSON stream.
+ * 
+ * Rows are parsed one at a time straight from the request body, so memory use does
+ * not depend on the size of the feed. A malformed row is reported with its line
+ * number and skipped; the reader stays positioned on the next row.
+ */
+public abstract class ProductImportReader implements Closeable {
+    
+    private static final int MAX_FIELD_LENGTH = 65536;
+    
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    
+    protected final BufferedReader reader;
+    protected long line;
+    
+    /**
+     * Thrown for a row that cannot be parsed. The reader can continue with the next row.
+     */
+    public static class MalformedRowException extends Exception {
+        public MalformedRowException(String message) {
+            super(message);
+        }
+    }
+    
+    protected ProductImportReader(InputStream input) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Open a reader for the feed's content type.
+     */
+    public static ProductImportReader open(String contentType, InputStream input, ObjectMapper objectMapper)
+            throws IOException {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Unsupported import content type: " + contentType);
+        }
+        if (TEXT_CSV.includes(mediaType)) {
+            return new Csv(input);
+        }
+        if (MediaType.APPLICATION_NDJSON.includes(mediaType)) {
+            return new Ndjson(input, objectMapper);
+        }
+        throw new BadRequestException("Unsupported import content type: " + contentType
+                + " (expected " + TEXT_CSV + " or " + MediaType.APPLICATION_NDJSON + ")");
+    }
+    
+    /**
+     * Read the next row, or null at the end of the feed.
+     */
+    public abstract ProductImportRow next() throws IOException, MalformedRowException;
+    
+    /**
+     * Line number where the row last returned (or rejected) starts.
+     */
+    public long getLine() {
+        return line;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    /**
+     * RFC 4180 CSV with a header row naming the columns. Quoted fields may contain
+     * commas, doubled quotes and line breaks.
+     */
+    static final class Csv extends ProductImportReader {
+        
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long nextLine = 1;
+        
+        Csv(InputStream input) throws IOException {
+            super(input);
+            List<String> header;
+            try {
+                header = readRecord();
+            } catch (MalformedRowException e) {
+                throw new BadRequestException("Invalid CSV header: " + e.getMessage());
+            }
+            if (header == null) {
+                throw new BadRequestException("CSV import is empty");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(normalizeColumn(header.get(i)), i);
+            }
+            if (!columns.containsKey("name") || !columns.containsKey("price")) {
+                throw new BadRequestException("CSV header must include name and price columns");
+            }
+        }
+        
+        @Override
+        public ProductImportRow next() throws IOException, MalformedRowException {
+            List<String> fields;
+            do {
+                fields = readRecord();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isBlank());
+            
+            return ProductImportRow.builder()
+                    .name(field(fields, "name"))
+                    .description(field(fields, "description"))
+                    .price(parseDecimal(field(fields, "price"), "price"))
+                    .stockQuantity(parseInteger(field(fields, "stockquantity")))
+                    .imageUrl(field(fields, "imageurl"))
+                    .categoryId(parseLong(field(fields, "categoryid")))
+                    .category(field(fields, "category") != null ? field(fields, "category") : field(fields, "categoryname"))
+                    .build();
+        }
+        
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+        
+        /**
+         * Read one record, which may span several lines inside quotes.
+         */
+        private List<String> readRecord() throws IOException, MalformedRowException {
+            line = nextLine;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean read = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                read = true;
+                if (field.length() > MAX_FIELD_LENGTH) {
+                    skipRecord(quoted, c);
+                    throw new MalformedRowException("Field exceeds " + MAX_FIELD_LENGTH + " characters");
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (following != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        if (c == '\n') {
+                            nextLine++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    nextLine++;
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (!read) {
+                return null;
+            }
+            if (quoted) {
+                throw new MalformedRowException("Unterminated quoted field");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+        
+        /**
+         * Discard the rest of an oversized record so reading resumes at the next one.
+         */
+        private void skipRecord(boolean quoted, int c) throws IOException {
+            while (c != -1) {
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == '\n') {
+                    nextLine++;
+                    if (!quoted) {
+                        return;
+                    }
+                }
+                c = reader.read();
+            }
+        }
+        
+        private static String normalizeColumn(String name) {
+            return name.trim().replace("_", "").replace(" ", "").toLowerCase(Locale.ROOT);
+        }
+        
+        private static BigDecimal parseDecimal(String value, String column) throws MalformedRowException {
+            try {
+                return value != null ? new BigDecimal(value) : null;
+            } catch (NumberFormatException e) {
+                throw new MalformedRowException("Invalid " + column + ": " + value);
+            }
+        }
+        
+        private static Integer parseInteger(String value) throws MalformedRowException {
+            try {
+                return value != null ? Integer.valueOf(value) : null;
+            } catch (NumberFormatException e) {
+                throw new MalformedRowException("Invalid stock quantity: " + value);
+            }
+        }
+        
+        private static Long parseLong(String value) throws MalformedRowException {
+            try {
+                return value != null ? Long.valueOf(value) : null;
+            } catch (NumberFormatException e) {
+                throw new MalformedRowException("Invalid category id: " + value);
+            }
+        }
+    }
+    
+    /**
+     * Newline-delimited JSON, one product object per line.
+     */
+    static final class Ndjson extends ProductImportReader {
+        
+        private final ObjectMapper objectMapper;
+        
+        Ndjson(InputStream input, ObjectMapper objectMapper) {
+            super(input);
+            this.objectMapper = objectMapper;
+        }
+        
+        @Override
+        public ProductImportRow next() throws IOException, MalformedRowException {
+            String text;
+            do {
+                text = readLine();
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            
+            try {
+                return objectMapper.readValue(text, ProductImportRow.class);
+            } catch (JsonProcessingException e) {
+                throw new MalformedRowException("Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        
+        /**
+         * Read one line, never buffering more than MAX_FIELD_LENGTH characters of it.
+         * An oversized line is skipped up to its end and rejected.
+         */
+        private String readLine() throws IOException, MalformedRowException {
+            StringBuilder text = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                if (text.length() >= MAX_FIELD_LENGTH) {
+                    line++;
+                    while (c != -1 && c != '\n') {
+                        c = reader.read();
+                    }
+                    throw new MalformedRowException("Line exceeds " + MAX_FIELD_LENGTH + " characters");
+                }
+                text.append((char) c);
+            }
+            if (c == -1 && text.length() == 0) {
+                return null;
+            }
+            line++;
+            int end = text.length();
+            if (end > 0 && text.charAt(end - 1) == '\r') {
+                text.setLength(end - 1);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductImportResult;
+import com.ecommerce.dto.ProductImportRow;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.repositories.ProductJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for streaming bulk imports of supplier product feeds.
+ * 
+ * Rows are read and validated one at a time and written in JDBC batches, each
+ * committed in its own transaction together with its catalog change-log rows.
+ * A failed batch is rolled back and reported without stopping the import, and
+ * caches and indexes are updated with one event per batch once it commits.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+    
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_IMAGE_URL_LENGTH = 500;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+    
+    private final ProductJdbcRepository productJdbcRepository;
+    private final CategoryTreeService categoryTreeService;
+    private final CatalogChangeService catalogChangeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${catalog.import.batch-size:1000}")
+    private int batchSize;
+    
+    @Value("${catalog.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+    
+    /**
+     * Import every row of a CSV or NDJSON feed (admin only). If the stream breaks
+     * off, the rows read so far are still written and the result is marked incomplete.
+     */
+    public ProductImportResult importProducts(InputStream input, String contentType) {
+        long started = System.currentTimeMillis();
+        CategoryTree categories = categoryTreeService.getTree();
+        Progress progress = new Progress();
+        List<ProductDTO> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+        ProductImportResult.RowError interruption = null;
+        
+        try (ProductImportReader reader = ProductImportReader.open(contentType, input, objectMapper)) {
+            while (true) {
+                ProductImportRow row;
+                try {
+                    row = reader.next();
+                } catch (ProductImportReader.MalformedRowException e) {
+                    progress.rowsRead++;
+                    progress.reject(reader.getLine(), e.getMessage());
+                    continue;
+                } catch (IOException e) {
+                    interruption = interrupted(reader.getLine(), e);
+                    break;
+                }
+                if (row == null) {
+                    break;
+                }
+                progress.rowsRead++;
+                
+                String error = validate(row, categories);
+                if (error != null) {
+                    progress.reject(reader.getLine(), error);
+                    continue;
+                }
+                batch.add(toDTO(row, categories));
+                batchLines.add(reader.getLine());
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch, batchLines, progress);
+                    batch.clear();
+                    batchLines.clear();
+                }
+            }
+        } catch (IOException e) {
+            // Opening or closing the stream failed; no particular row is to blame
+            if (interruption == null) {
+                interruption = interrupted(0, e);
+            }
+        } finally {
+            // Rows already validated are still written if the stream breaks off
+            if (!batch.isEmpty()) {
+                writeBatch(batch, batchLines, progress);
+            }
+        }
+        
+        log.info("Product import finished: {} rows read, {} imported, {} failed in {} batches",
+                progress.rowsRead, progress.imported, progress.failed, progress.batches);
+        boolean errorsTruncated = progress.failed > progress.errors.size();
+        if (interruption != null) {
+            progress.errors.add(interruption);
+        }
+        return ProductImportResult.builder()
+                .rowsRead(progress.rowsRead)
+                .imported(progress.imported)
+                .failed(progress.failed)
+                .batches(progress.batches)
+                .durationMillis(System.currentTimeMillis() - started)
+                .errors(progress.errors)
+                .errorsTruncated(errorsTruncated)
+                .incomplete(interruption != null)
+                .build();
+    }
+    
+    private ProductImportResult.RowError interrupted(long line, IOException e) {
+        log.warn("Product import stream broke off after line {}: {}", line, e.getMessage());
+        return new ProductImportResult.RowError(line, "Import stream broke off: " + e.getMessage());
+    }
+    
+    /**
+     * Insert and commit one batch, then publish its changes.
+     */
+    private void writeBatch(List<ProductDTO> batch, List<Long> lines, Progress progress) {
+        progress.batches++;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                productJdbcRepository.insertAll(batch);
+                catalogChangeService.recordProductChanges(batch.stream()
+                        .map(ProductDTO::getId)
+                        .collect(Collectors.toList()));
+            });
+        } catch (DataAccessException | TransactionException e) {
+            String message = "Batch rolled back: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.warn("Product import batch {} failed: {}", progress.batches, message);
+            for (Long line : lines) {
+                progress.reject(line, message);
+            }
+            return;
+        }
+        
+        // Outside a transaction the listeners run immediately
+        eventPublisher.publishEvent(new ProductsChangedEvent(new ArrayList<>(batch)));
+        progress.imported += batch.size();
+        if (progress.batches % PROGRESS_LOG_INTERVAL == 0) {
+            log.info("Product import progress: {} rows read, {} imported, {} failed",
+                    progress.rowsRead, progress.imported, progress.failed);
+        }
+    }
+    
+    /**
+     * Check a row against the same rules as a single product create.
+     */
+    private String validate(ProductImportRow row, CategoryTree categories) {
+        if (row.getName() == null || row.getName().isBlank()) {
+            return "Product name is required";
+        }
+        if (row.getName().length() > MAX_NAME_LENGTH) {
+            return "Product name exceeds " + MAX_NAME_LENGTH + " characters";
+        }
+        if (row.getPrice() == null) {
+            return "Price is required";
+        }
+        if (row.getPrice().signum() <= 0) {
+            return "Price must be positive";
+        }
+        if (row.getPrice().scale() > 2 || row.getPrice().compareTo(MAX_PRICE) > 0) {
+            return "Price must have at most 8 integer digits and 2 decimals";
+        }
+        if (row.getStockQuantity() == null) {
+            return "Stock quantity is required";
+        }
+        if (row.getStockQuantity() < 0) {
+            return "Stock quantity must not be negative";
+        }
+        if (row.getImageUrl() != null && row.getImageUrl().length() > MAX_IMAGE_URL_LENGTH) {
+            return "Image URL exceeds " + MAX_IMAGE_URL_LENGTH + " characters";
+        }
+        if (row.getCategoryId() != null && categories.find(row.getCategoryId()).isEmpty()) {
+            return "Category not found with id: '" + row.getCategoryId() + "'";
+        }
+        if (row.getCategoryId() == null && row.getCategory() != null
+                && categories.findByName(row.getCategory().trim()).isEmpty()) {
+            return "Category not found with name: '" + row.getCategory() + "'";
+        }
+        return null;
+    }
+    
+    private ProductDTO toDTO(ProductImportRow row, CategoryTree categories) {
+        CategoryTree.Node category = null;
+        if (row.getCategoryId() != null) {
+            category = categories.find(row.getCategoryId()).orElse(null);
+        } else if (row.getCategory() != null) {
+            category = categories.findByName(row.getCategory().trim()).orElse(null);
+        }
+        return ProductDTO.builder()
+                .name(row.getName().trim())
+                .description(row.getDescription())
+                .price(row.getPrice())
+                .stockQuantity(row.getStockQuantity())
+                .imageUrl(row.getImageUrl())
+                .categoryId(category != null ? category.getId() : null)
+                .categoryName(category != null ? category.getName() : null)
+                .isActive(true)
+                .build();
+    }
+    
+    /**
+     * Running counts and the first rejected rows.
+     */
+    private final class Progress {
+        long rowsRead;
+        long imported;
+        long failed;
+        int batches;
+        final List<ProductImportResult.RowError> errors = new ArrayList<>();
+        
+        void reject(long line, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ProductImportResult.RowError(line, message));
+            }
+        }
+    }
+}
@@ -1,17 +1,45 @@
 package com.ecommerce.services;
 
+import com.ecommerce.dto.ProductCursor;
 import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductFacetResult;
+import com.ecommerce.dto.ProductFilterRequest;
+import com.ecommerce.dto.ProductPage;
+import com.ecommerce.dto.ProductPageRequest;
 import com.ecommerce.dto.ProductRequest;
+import com.ecommerce.dto.ProductSortField;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.dto.SuggestionDTO;
 import com.ecommerce.entities.Category;
 import com.ecommerce.entities.Product;
+import com.ecommerce.events.CategoryChangedEvent;
+import com.ecommerce.events.ProductChangedEvent;
+import com.ecommerce.events.ProductsChangedEvent;
+import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.exceptions.PreconditionFailedException;
 import com.ecommerce.exceptions.ResourceNotFoundException;
 import com.ecommerce.repositories.CategoryRepository;
 import com.ecommerce.repositories.ProductRepository;
+import com.ecommerce.search.ProductFacetIndex;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.SuggestionIndex;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -21,16 +49,29 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ProductService {
     
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int DEFAULT_SUGGESTIONS = 10;
+    public static final int MAX_SUGGESTIONS = 50;
+    public static final int MAX_BATCH_IDS = 500;
+    public static final int ID_QUERY_CHUNK_SIZE = 100;
+    
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final CategoryService categoryService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<Long, ProductDTO> productCache;
+    private final EntityVersionService entityVersionService;
+    private final HotStockService hotStockService;
     
     /**
-     * Get all active products.
+     * Get one page of active products.
      */
-    public List<ProductDTO> getAllProducts() {
-        return productRepository.findByIsActiveTrue().stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+    public ProductPage getAllProducts(ProductPageRequest page) {
+        return getProductPage(null, null, page);
     }
     
     /**
@@ -46,9 +87,47 @@ public class ProductService {
      * Get product by ID.
      */
     public ProductDTO getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
-        return toDTO(product);
+        return productCache.get(id, key -> productRepository.findWithCategoryById(key)
+                .map(this::toDTO)
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", key)));
+    }
+    
+    /**
+     * Get many products by ID in request order. Cached products are served from the
+     * near-cache and the misses are loaded with one IN query per chunk of ids.
+     * Unknown ids are skipped; duplicates are returned once, at their first position.
+     */
+    public List<ProductDTO> getProductsByIds(List<Long> ids) {
+        List<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (distinctIds.size() > MAX_BATCH_IDS) {
+            throw new BadRequestException("At most " + MAX_BATCH_IDS + " product ids can be requested at once");
+        }
+        if (distinctIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, ProductDTO> productsById = productCache.getAll(distinctIds, this::loadProductsByIds);
+        return distinctIds.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Load cache misses with their category, keeping each IN list small enough for the query planner.
+     */
+    private Map<Long, ProductDTO> loadProductsByIds(Set<? extends Long> ids) {
+        List<Long> pending = new ArrayList<>(ids);
+        Map<Long, ProductDTO> loaded = new HashMap<>(pending.size() * 2);
+        for (int from = 0; from < pending.size(); from += ID_QUERY_CHUNK_SIZE) {
+            List<Long> chunk = pending.subList(from, Math.min(from + ID_QUERY_CHUNK_SIZE, pending.size()));
+            for (Product product : productRepository.findAllWithCategoryByIdIn(chunk)) {
+                loaded.put(product.getId(), toDTO(product));
+            }
+        }
+        return loaded;
     }
     
     /**
@@ -60,23 +139,193 @@ public class ProductService {
     }
     
     /**
-     * Get products by category.
+     * Get one page of active products in a category, optionally including
+     * every descendant category.
      */
-    public List<ProductDTO> getProductsByCategory(Long categoryId) {
-        return productRepository.findByCategoryIdAndIsActiveTrue(categoryId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+    public ProductPage getProductsByCategory(Long categoryId, boolean includeSubcategories, ProductPageRequest page) {
+        Collection<Long> categoryIds = includeSubcategories
+                ? categoryService.getSubtreeIds(categoryId)
+                : Collections.singleton(categoryId);
+        return getProductPage(categoryIds, null, page);
     }
     
     /**
-     * Search products by name.
+     * Search one page of active products by name and description.
+     * Results are ranked by relevance from the in-memory search index unless
+     * an explicit attribute sort is requested.
      */
-    public List<ProductDTO> searchProducts(String query) {
-        return productRepository.findByNameContainingIgnoreCase(query).stream()
-                .map(this::toDTO)
+    public ProductPage searchProducts(String query, ProductPageRequest page) {
+        ProductCursor after = decodeCursor(page.getCursor());
+        ProductSortField sort = resolveSort(page, after, ProductSortField.RELEVANCE);
+        if (sort != ProductSortField.RELEVANCE) {
+            return getProductPage(null, query, page);
+        }
+        if (StringUtils.hasText(page.getDirection()) && parseDirection(page.getDirection())) {
+            throw new BadRequestException("Relevance can only be sorted descending");
+        }
+        int size = resolvePageSize(page.getSize());
+        
+        List<ProductSearchIndex.Hit> hits = productSearchIndex.search(
+                query,
+                after != null ? (Float) after.getSortValue() : null,
+                after != null ? after.getLastId() : null,
+                size + 1);
+        boolean hasMore = hits.size() > size;
+        if (hasMore) {
+            hits = hits.subList(0, size);
+        }
+        
+        List<ProductSummary> items = findSummariesInOrder(hits.stream()
+                .map(ProductSearchIndex.Hit::getProductId)
+                .collect(Collectors.toList()));
+        
+        String nextCursor = null;
+        if (hasMore) {
+            ProductSearchIndex.Hit last = hits.get(hits.size() - 1);
+            nextCursor = new ProductCursor(ProductSortField.RELEVANCE, false, last.getProductId(),
+                    Float.toString(last.getScore())).encode();
+        }
+        return toPage(items, nextCursor, hasMore);
+    }
+    
+    /**
+     * Typeahead completions of product and category names.
+     */
+    public List<SuggestionDTO> suggest(String prefix, Integer limit) {
+        int size = limit != null ? limit : DEFAULT_SUGGESTIONS;
+        if (size < 1 || size > MAX_SUGGESTIONS) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return suggestionIndex.suggest(prefix, size);
+    }
+    
+    /**
+     * Filter active products by category subtree, price range and stock,
+     * with facet counts for each filter dimension.
+     */
+    public ProductFacetResult filterProducts(ProductFilterRequest filter) {
+        ProductCursor after = decodeCursor(filter.getCursor());
+        if (after != null && (after.getSort() != ProductSortField.ID || !after.isAscending())) {
+            throw new BadRequestException("Cursor does not match the requested sort order");
+        }
+        int size = resolvePageSize(filter.getSize());
+        
+        ProductFacetIndex.Result result = productFacetIndex.query(
+                filter.getCategoryId(),
+                filter.getMinPrice(),
+                filter.getMaxPrice(),
+                Boolean.TRUE.equals(filter.getInStock()),
+                after != null ? after.getLastId() : null,
+                size);
+        
+        List<ProductSummary> items = findSummariesInOrder(result.getProductIds());
+        String nextCursor = result.isHasMore() && !items.isEmpty()
+                ? new ProductCursor(ProductSortField.ID, true, items.get(items.size() - 1).getId(),
+                        items.get(items.size() - 1).getId().toString()).encode()
+                : null;
+        
+        return ProductFacetResult.builder()
+                .products(toPage(items, nextCursor, result.isHasMore()))
+                .total(result.getTotal())
+                .categories(result.getCategories())
+                .priceBands(result.getPriceBands())
+                .inStockCount(result.getInStockCount())
+                .build();
+    }
+    
+    /**
+     * Run a keyset page query. A page costs the same regardless of depth since
+     * the cursor seeks directly past the last row instead of skipping an offset.
+     */
+    private ProductPage getProductPage(Collection<Long> categoryIds, String query, ProductPageRequest page) {
+        ProductCursor after = decodeCursor(page.getCursor());
+        ProductSortField sort = resolveSort(page, after, ProductSortField.ID);
+        if (sort == ProductSortField.RELEVANCE) {
+            throw new BadRequestException("Relevance sort is only available for search");
+        }
+        boolean ascending = after == null || after.isAscending();
+        if (StringUtils.hasText(page.getDirection())) {
+            ascending = parseDirection(page.getDirection());
+        }
+        if (after != null && after.isAscending() != ascending) {
+            throw new BadRequestException("Cursor does not match the requested sort order");
+        }
+        int size = resolvePageSize(page.getSize());
+        
+        // Fetch one extra row to learn whether another page exists
+        List<ProductSummary> items = productRepository.findActiveSummaryPage(
+                categoryIds, query, sort, ascending, after, size + 1);
+        boolean hasMore = items.size() > size;
+        if (hasMore) {
+            items = items.subList(0, size);
+        }
+        
+        String nextCursor = hasMore
+                ? ProductCursor.after(items.get(items.size() - 1), sort, ascending).encode()
+                : null;
+        return toPage(items, nextCursor, hasMore);
+    }
+    
+    /**
+     * Load product summaries by ID in one query, preserving the order of the given ids.
+     */
+    private List<ProductSummary> findSummariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, ProductSummary> summariesById = productRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+        return ids.stream()
+                .map(summariesById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
     
+    private ProductCursor decodeCursor(String cursor) {
+        return StringUtils.hasText(cursor) ? ProductCursor.decode(cursor) : null;
+    }
+    
+    /**
+     * Resolve the sort key from the request, falling back to the cursor's key and then the default.
+     */
+    private ProductSortField resolveSort(ProductPageRequest page, ProductCursor after, ProductSortField defaultSort) {
+        ProductSortField sort = after != null ? after.getSort() : defaultSort;
+        if (StringUtils.hasText(page.getSort())) {
+            sort = ProductSortField.fromParam(page.getSort());
+        }
+        if (after != null && after.getSort() != sort) {
+            throw new BadRequestException("Cursor does not match the requested sort order");
+        }
+        return sort;
+    }
+    
+    private int resolvePageSize(Integer requested) {
+        int size = requested != null ? requested : DEFAULT_PAGE_SIZE;
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
+    
+    private boolean parseDirection(String direction) {
+        if ("asc".equalsIgnoreCase(direction)) {
+            return true;
+        }
+        if ("desc".equalsIgnoreCase(direction)) {
+            return false;
+        }
+        throw new BadRequestException("Unsupported sort direction: " + direction);
+    }
+    
+    private ProductPage toPage(List<ProductSummary> items, String nextCursor, boolean hasMore) {
+        return ProductPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(items.size())
+                .build();
+    }
+    
     /**
      * Create a new product (admin only).
      */
@@ -98,7 +347,9 @@ public class ProductService {
         }
         
         product = productRepository.save(product);
-        return toDTO(product);
+        ProductDTO dto = toDTO(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(dto));
+        return dto;
     }
     
     /**
@@ -106,8 +357,20 @@ public class ProductService {
      */
     @Transactional
     public ProductDTO updateProduct(Long id, ProductRequest request) {
-        Product product = productRepository.findById(id)
+        return updateProduct(id, request, null);
+    }
+    
+    /**
+     * Update a product if it still matches the client's If-Match ETag (admin only).
+     * The version column also rejects a concurrent update that slips in after the check.
+     */
+    @Transactional
+    public ProductDTO updateProduct(Long id, ProductRequest request, String ifMatch) {
+        Product product = productRepository.findWithCategoryById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
+        if (!EntityVersionService.matchesIfMatch(ifMatch, entityVersionService.getProductVersion(product))) {
+            throw new PreconditionFailedException("Product " + id + " has changed since it was read");
+        }
         
         product.setName(request.getName());
         product.setDescription(request.getDescription());
@@ -121,8 +384,12 @@ public class ProductService {
             product.setCategory(category);
         }
         
+        // A hot product's checkouts take from its shards, so they get the new stock too
+        hotStockService.resetStock(id, request.getStockQuantity());
         product = productRepository.save(product);
-        return toDTO(product);
+        ProductDTO dto = toDTO(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(dto));
+        return dto;
     }
     
     /**
@@ -133,7 +400,40 @@ public class ProductService {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
         product.setIsActive(false);
-        productRepository.save(product);
+        product = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(toDTO(product)));
+    }
+    
+    /**
+     * Drop the cached DTO once a product change commits.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        productCache.invalidate(event.getProduct().getId());
+    }
+    
+    /**
+     * Drop the cached DTOs of a committed bulk write in one pass.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        productCache.invalidateAll(event.getProducts().stream()
+                .map(ProductDTO::getId)
+                .collect(Collectors.toList()));
+    }
+    
+    /**
+     * Drop cached DTOs that embed a renamed or deleted category.
+     * Deletes cascade to subcategories and their products, so they clear the cache.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.isDeleted()) {
+            productCache.invalidateAll();
+            return;
+        }
+        Long categoryId = event.getCategory().getId();
+        productCache.asMap().values().removeIf(product -> categoryId.equals(product.getCategoryId()));
     }
     
     /**
@@ -0,0 +1,137 @@
+package com.ecommerce.services;
+
+import com.ecommerce.entities.RefreshToken;
+import com.ecommerce.exceptions.UnauthorizedException;
+import com.ecommerce.repositories.RefreshTokenRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Service for rotating refresh tokens.
+ * 
+ * A refresh token is 256 random bits handed to the client once and stored only as
+ * its SHA-256 hash. Each use revokes it and issues a successor in the same family;
+ * presenting a token that was already used means it was copied, so the whole
+ * family is revoked and both holders must log in again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+    
+    private static final int TOKEN_BYTES = 32;
+    
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    @Value("${jwt.refresh.expiration:30d}")
+    private Duration refreshExpiration;
+    
+    /**
+     * Issue a refresh token that starts a new family, as on login.
+     */
+    @Transactional
+    public String issue(Long userId) {
+        return create(userId, UUID.randomUUID().toString());
+    }
+    
+    /**
+     * Exchange a refresh token for its successor.
+     * 
+     * @throws UnauthorizedException if the token is unknown, expired or already used
+     */
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public Rotation rotate(String token) {
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(token))
+                .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
+        if (current.getRevoked()) {
+            int revoked = refreshTokenRepository.revokeFamily(current.getFamilyId());
+            log.warn("Refresh token reused for user {}, revoked {} tokens of its family", current.getUserId(), revoked);
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        if (current.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        current.setRevoked(true);
+        return new Rotation(current.getUserId(), create(current.getUserId(), current.getFamilyId()));
+    }
+    
+    /**
+     * Revoke the family of a refresh token, as on logout. Unknown tokens are ignored.
+     */
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.findByTokenHash(hash(token))
+                .ifPresent(refreshToken -> refreshTokenRepository.revokeFamily(refreshToken.getFamilyId()));
+    }
+    
+    /**
+     * Revoke every refresh token of a user, as on password change.
+     */
+    @Transactional
+    public void revokeAll(Long userId) {
+        refreshTokenRepository.revokeAllByUserId(userId);
+    }
+    
+    /**
+     * Drop expired refresh tokens.
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh.cleanup-interval:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.debug("Purged {} expired refresh tokens", purged);
+        }
+    }
+    
+    private String create(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(RefreshToken.builder()
+                .userId(userId)
+                .tokenHash(hash(token))
+                .familyId(familyId)
+                .expiresAt(LocalDateTime.now().plus(refreshExpiration))
+                .build());
+        return token;
+    }
+    
+    /**
+     * Tokens are random and long, so a plain digest is enough to make a leaked table useless.
+     */
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * The user of a rotated refresh token and the token that replaces it.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Rotation {
+        private final Long userId;
+        private final String refreshToken;
+    }
+}
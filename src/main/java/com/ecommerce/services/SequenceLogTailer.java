@@ -0,0 +1,84 @@
+package com.ecommerce.services;
+
+import com.ecommerce.repositories.SequenceLogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads an append-only log table by sequence number, returning each committed
+ * entry once.
+ * 
+ * Sequence numbers are taken at insert but become visible at commit, so a poll can
+ * see an entry while a lower one is still missing. Such a hole is looked up by id
+ * on later polls until it shows up, or until the gap timeout presumes its
+ * transaction rolled back. Reading continues after the highest entry seen, so
+ * waiting on a hole never re-reads entries already returned. Not thread-safe;
+ * callers poll from one thread at a time.
+ */
+@Slf4j
+public class SequenceLogTailer<T> {
+    
+    /** Holes tracked at most; a larger jump in the sequence is presumed to be skipped ids. */
+    private static final int MAX_GAPS = 10_000;
+    
+    private final SequenceLogRepository<T> repository;
+    private final ToLongFunction<T> idOf;
+    private final int batchSize;
+    private final long gapTimeoutMillis;
+    
+    private long position;
+    
+    /** Missing sequence number to the time it was first seen missing. */
+    private final Map<Long, Long> gaps = new HashMap<>();
+    
+    /**
+     * @param position the sequence number to start after
+     */
+    public SequenceLogTailer(SequenceLogRepository<T> repository, ToLongFunction<T> idOf,
+                             long position, int batchSize, Duration gapTimeout) {
+        this.repository = repository;
+        this.idOf = idOf;
+        this.position = position;
+        this.batchSize = batchSize;
+        this.gapTimeoutMillis = gapTimeout.toMillis();
+    }
+    
+    /**
+     * Read the entries committed since the last poll: late commits filling holes
+     * first, then at most one batch of new entries.
+     */
+    public List<T> poll() {
+        List<T> entries = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        if (!gaps.isEmpty()) {
+            for (T entry : repository.findAllById(gaps.keySet())) {
+                gaps.remove(idOf.applyAsLong(entry));
+                entries.add(entry);
+            }
+            gaps.values().removeIf(since -> now - since >= gapTimeoutMillis);
+        }
+        for (T entry : repository.findByIdGreaterThanOrderByIdAsc(position, PageRequest.of(0, batchSize))) {
+            long id = idOf.applyAsLong(entry);
+            if (id - position - 1 > MAX_GAPS) {
+                log.warn("Sequence jumped from {} to {}; only the last {} ids are waited for", position, id, MAX_GAPS);
+            }
+            for (long missing = Math.max(position + 1, id - MAX_GAPS); missing < id; missing++) {
+                gaps.put(missing, now);
+            }
+            position = id;
+            entries.add(entry);
+        }
+        return entries;
+    }
+    
+    /**
+     * Highest sequence number read so far.
+     */
+    public long getPosition() {
+        return position;
+    }
+}
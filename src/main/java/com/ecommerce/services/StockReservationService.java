@@ -0,0 +1,324 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ReservationDTO;
+import com.ecommerce.dto.StockAvailabilityDTO;
+import com.ecommerce.entities.Cart;
+import com.ecommerce.entities.CartItem;
+import com.ecommerce.entities.Product;
+import com.ecommerce.entities.StockReservation;
+import com.ecommerce.entities.User;
+import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.repositories.CartRepository;
+import com.ecommerce.repositories.StockReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service that places time-limited holds on stock when a checkout starts, so a
+ * customer who reaches payment during a flash sale is not beaten to the stock.
+ * 
+ * Holds live in the stock_reservations table and are mirrored by per-product
+ * in-memory counters. Placing a hold locks the products rows like a checkout does,
+ * then checks and bumps the counter under a lock striped by product id, so reads of
+ * available stock (stock minus holds) never touch a products row lock. Checkouts
+ * pass the quantity held by others into their conditional stock decrement, which
+ * enforces the holds in the write. Every counter change made inside a transaction
+ * is also tracked as pending until that transaction completes, and undone if it
+ * rolls back. A background sweeper deletes expired holds and reconciles each
+ * counter with the table total plus its pending changes, one stripe at a time,
+ * which also picks up holds placed by other nodes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+    
+    private static final int STRIPES = 64;
+    
+    private final StockReservationRepository reservationRepository;
+    private final CartRepository cartRepository;
+    private final ProductService productService;
+    private final HotStockService hotStockService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${inventory.reservations.ttl:10m}")
+    private Duration ttl;
+    
+    private final Map<Long, AtomicInteger> held = new ConcurrentHashMap<>();
+    
+    /** Counter changes whose transaction has not completed yet. Written under the stripe lock. */
+    private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final Object[] stripes = createStripes();
+    
+    /**
+     * Load the holds that survived a restart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refresh();
+    }
+    
+    /**
+     * Stock of a product net of every checkout hold, without locking the product row.
+     */
+    public StockAvailabilityDTO getAvailability(Long productId) {
+        ProductDTO product = productService.getProductById(productId);
+        int reserved = getReservedQuantity(productId);
+        return StockAvailabilityDTO.builder()
+                .productId(productId)
+                .stockQuantity(product.getStockQuantity())
+                .reserved(reserved)
+                .available(Math.max(0, product.getStockQuantity() - reserved))
+                .build();
+    }
+    
+    /**
+     * Quantity of a product currently held by checkouts.
+     */
+    public int getReservedQuantity(Long productId) {
+        AtomicInteger counter = held.get(productId);
+        return counter != null ? counter.get() : 0;
+    }
+    
+    /**
+     * Quantity each of the given users holds per product id. Users without holds are left out.
+     */
+    public Map<Long, Map<Long, Integer>> getHeldQuantities(Collection<Long> userIds) {
+        Map<Long, Map<Long, Integer>> holds = new HashMap<>();
+        for (Object[] row : reservationRepository.sumQuantityByUserAndProduct(userIds)) {
+            holds.computeIfAbsent((Long) row[0], key -> new HashMap<>())
+                    .put((Long) row[1], ((Number) row[2]).intValue());
+        }
+        return holds;
+    }
+    
+    /**
+     * Hold the stock for every line of the user's cart for the configured TTL,
+     * replacing the user's previous holds. Fails without holding anything if a
+     * line cannot be served.
+     */
+    public ReservationDTO reserveCart(User user) {
+        Cart cart = cartRepository.findByUserIdWithItems(user.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Cart", "userId", user.getId()));
+        if (cart.getItems().isEmpty()) {
+            throw new BadRequestException("Cart is empty");
+        }
+        
+        // Aggregate per product and hold in id order
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            products.put(item.getProduct().getId(), item.getProduct());
+        }
+        LocalDateTime expiresAt = LocalDateTime.now().plus(ttl);
+        List<StockReservation> holds = quantities.entrySet().stream()
+                .map(line -> StockReservation.builder()
+                        .userId(user.getId())
+                        .productId(line.getKey())
+                        .quantity(line.getValue())
+                        .expiresAt(expiresAt)
+                        .build())
+                .collect(Collectors.toList());
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Integer> changes = trackChanges();
+            for (StockReservation hold : deleteHolds(reservationRepository.findByUserIdForUpdate(user.getId()))) {
+                change(changes, hold.getProductId(), -hold.getQuantity());
+            }
+            // Holds and checkouts lock the same rows, so neither checks against stock the other is taking
+            Map<Long, Integer> stock = hotStockService.lockStock(quantities.keySet());
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                take(changes, products.get(line.getKey()), stock.getOrDefault(line.getKey(), 0), line.getValue());
+            }
+            reservationRepository.saveAll(holds);
+        });
+        
+        return ReservationDTO.builder()
+                .expiresAt(expiresAt)
+                .holds(quantities.entrySet().stream()
+                        .map(line -> new ReservationDTO.Hold(line.getKey(), line.getValue()))
+                        .collect(Collectors.toList()))
+                .build();
+    }
+    
+    /**
+     * Drop the user's holds, e.g. when the customer leaves checkout.
+     */
+    public void releaseHolds(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> claimHolds(userId));
+    }
+    
+    /**
+     * Remove the user's holds in the caller's transaction, as the order that takes
+     * the stock for real is being written. The counters keep counting the holds until
+     * the transaction commits, so no other checkout can take that stock before this
+     * one has; the caller subtracts them from the reserved quantity itself. On
+     * rollback the holds stay in place.
+     * 
+     * @return quantity the user held per product id
+     */
+    public Map<Long, Integer> claimHolds(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Holds can only be claimed inside a transaction");
+        }
+        Map<Long, Integer> claimed = deleteHolds(reservationRepository.findByUserIdForUpdate(userId)).stream()
+                .collect(Collectors.toMap(StockReservation::getProductId, StockReservation::getQuantity, Integer::sum));
+        if (!claimed.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        claimed.forEach(StockReservationService.this::release);
+                    }
+                }
+            });
+        }
+        return claimed;
+    }
+    
+    /**
+     * Delete expired holds and re-read the counters from the table.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservations.sweep-interval:5000}")
+    public void sweep() {
+        Integer expired = transactionTemplate.execute(status ->
+                reservationRepository.deleteExpired(LocalDateTime.now()));
+        if (expired != null && expired > 0) {
+            log.debug("Released {} expired stock holds", expired);
+        }
+        refresh();
+    }
+    
+    /**
+     * Set each counter to its table total plus the changes still pending on this node.
+     * A change that commits while the totals are read can leave its counter off until
+     * the next sweep, never below zero.
+     */
+    private void refresh() {
+        Map<Long, Integer> totals = new HashMap<>();
+        for (Object[] row : reservationRepository.sumQuantityByProduct()) {
+            totals.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        Set<Long> productIds = new HashSet<>(totals.keySet());
+        productIds.addAll(held.keySet());
+        for (Long productId : productIds) {
+            synchronized (stripe(productId)) {
+                int quantity = Math.max(0, totals.getOrDefault(productId, 0) + pending.getOrDefault(productId, 0));
+                if (quantity > 0) {
+                    held.computeIfAbsent(productId, key -> new AtomicInteger()).set(quantity);
+                } else {
+                    held.remove(productId);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Check and bump a product's counter atomically with respect to other holds on it.
+     */
+    private void take(Map<Long, Integer> changes, Product product, int stock, int quantity) {
+        synchronized (stripe(product.getId())) {
+            int available = stock - getReservedQuantity(product.getId());
+            if (available < quantity) {
+                throw new BadRequestException("Only " + Math.max(0, available) + " available for: "
+                        + product.getName() + " (product " + product.getId() + ", requested " + quantity + ")");
+            }
+            change(changes, product.getId(), quantity);
+        }
+    }
+    
+    /**
+     * Start tracking the counter changes of the current transaction. Once it completes
+     * they stop being pending, and they are undone if it rolled back.
+     */
+    private Map<Long, Integer> trackChanges() {
+        Map<Long, Integer> changes = new HashMap<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                changes.forEach((productId, quantity) -> {
+                    synchronized (stripe(productId)) {
+                        addPending(productId, -quantity);
+                        if (status != STATUS_COMMITTED) {
+                            add(productId, -quantity);
+                        }
+                    }
+                });
+            }
+        });
+        return changes;
+    }
+    
+    private void change(Map<Long, Integer> changes, Long productId, int quantity) {
+        synchronized (stripe(productId)) {
+            add(productId, quantity);
+            addPending(productId, quantity);
+        }
+        changes.merge(productId, quantity, Integer::sum);
+    }
+    
+    /**
+     * Delete holds read with a lock, so none of them can have been removed by the
+     * sweeper meanwhile and one statement covers them all.
+     */
+    private List<StockReservation> deleteHolds(List<StockReservation> holds) {
+        if (!holds.isEmpty()) {
+            reservationRepository.deleteHolds(holds.stream()
+                    .map(StockReservation::getId)
+                    .collect(Collectors.toList()));
+        }
+        return holds;
+    }
+    
+    private void add(Long productId, int quantity) {
+        held.computeIfAbsent(productId, key -> new AtomicInteger()).addAndGet(quantity);
+    }
+    
+    /**
+     * Drop committed claims from a counter. A sweep that read the table just after the
+     * commit may have dropped them already; the counter stops at zero and the next
+     * sweep sets it right.
+     */
+    private void release(Long productId, int quantity) {
+        synchronized (stripe(productId)) {
+            AtomicInteger counter = held.get(productId);
+            if (counter != null) {
+                counter.updateAndGet(current -> Math.max(0, current - quantity));
+            }
+        }
+    }
+    
+    private void addPending(Long productId, int quantity) {
+        pending.merge(productId, quantity, (current, delta) -> current + delta == 0 ? null : current + delta);
+    }
+    
+    private Object stripe(Long productId) {
+        return stripes[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+    
+    private static Object[] createStripes() {
+        Object[] stripes = new Object[STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+        return stripes;
+    }
+}
@@ -4,13 +4,17 @@ import com.ecommerce.dto.*;
 import com.ecommerce.entities.*;
 import com.ecommerce.exceptions.BadRequestException;
 import com.ecommerce.exceptions.ResourceNotFoundException;
+import com.ecommerce.exceptions.UnauthorizedException;
 import com.ecommerce.repositories.CartRepository;
 import com.ecommerce.repositories.UserRepository;
 import com.ecommerce.security.JwtUtil;
+import com.ecommerce.security.LoginAttemptService;
+import com.ecommerce.security.TokenRevocationService;
+import com.ecommerce.security.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,6 +34,9 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final LoginAttemptService loginAttemptService;
     
     /**
      * Register a new user.
@@ -58,36 +65,74 @@ public class UserService {
                 .build();
         cartRepository.save(cart);
         
-        // Generate token
-        String token = jwtUtil.generateToken(user.getEmail());
-        
-        return AuthResponse.builder()
-                .token(token)
-                .type("Bearer")
-                .user(toDTO(user))
-                .build();
+        return authResponse(user, refreshTokenService.issue(user.getId()));
     }
     
     /**
-     * Authenticate a user and return JWT token.
+     * Authenticate a user and return JWT token. Accounts and client addresses with
+     * too many recent failures are refused before the password is checked.
      */
-    public AuthResponse login(LoginRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.getEmail(),
-                        request.getPassword()
-                )
-        );
+    public AuthResponse login(LoginRequest request, String clientIp) {
+        loginAttemptService.checkAllowed(request.getEmail(), clientIp);
+        try {
+            authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            request.getEmail(),
+                            request.getPassword()
+                    )
+            );
+        } catch (AuthenticationException e) {
+            loginAttemptService.recordFailure(request.getEmail(), clientIp);
+            throw e;
+        }
+        loginAttemptService.recordSuccess(request.getEmail());
         
-        String token = jwtUtil.generateToken(authentication);
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", request.getEmail()));
-        
-        return AuthResponse.builder()
-                .token(token)
-                .type("Bearer")
-                .user(toDTO(user))
-                .build();
+        return authResponse(user, refreshTokenService.issue(user.getId()));
+    }
+    
+    /**
+     * Exchange a refresh token for a new access token and a new refresh token.
+     * The access token is built from the user as stored now, so role changes apply.
+     */
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public AuthResponse refresh(RefreshTokenRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+        User user = userRepository.findById(rotation.getUserId())
+                .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
+        return authResponse(user, rotation.getRefreshToken());
+    }
+    
+    /**
+     * Revoke the access token the request was made with, if any, and the family of
+     * the given refresh token, if any.
+     */
+    @Transactional
+    public void logout(VerifiedToken accessToken, String refreshToken) {
+        if (accessToken != null) {
+            tokenRevocationService.revokeToken(accessToken);
+        }
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+    }
+    
+    /**
+     * Change a user's password and revoke all of their access and refresh tokens,
+     * on every node.
+     */
+    @Transactional
+    public void changePassword(User currentUser, ChangePasswordRequest request) {
+        User user = userRepository.findById(currentUser.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", currentUser.getId()));
+        if (!passwordEncoder.matches(request.getCurrentPassword(), user.getPassword())) {
+            throw new BadRequestException("Current password is incorrect");
+        }
+        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        userRepository.save(user);
+        refreshTokenService.revokeAll(user.getId());
+        tokenRevocationService.revokeUser(user.getId());
     }
     
     /**
@@ -116,6 +161,16 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", email));
     }
     
+    private AuthResponse authResponse(User user, String refreshToken) {
+        return AuthResponse.builder()
+                .token(jwtUtil.generateToken(user, tokenRevocationService.getRevokedBefore(user.getId())))
+                .type("Bearer")
+                .expiresIn(jwtUtil.getExpiration() / 1000)
+                .refreshToken(refreshToken)
+                .user(toDTO(user))
+                .build();
+    }
+    
     /**
      * Convert User entity to DTO.
      */
@@ -0,0 +1,13 @@
+-- V10__create_rate_limit_windows.sql
+-- Requests per client and rate limit group in fixed windows, one row per API node,
+-- summed across nodes for the optional shared quota (rate-limit.shared.enabled).
+
+CREATE TABLE rate_limit_windows (
+    client_key VARCHAR(100) NOT NULL,
+    window_start BIGINT NOT NULL,
+    node_id VARCHAR(36) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (client_key, window_start, node_id)
+);
+
+CREATE INDEX idx_rate_limit_windows_start ON rate_limit_windows(window_start);
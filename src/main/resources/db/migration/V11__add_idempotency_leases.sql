@@ -0,0 +1,6 @@
+-- V11__add_idempotency_leases.sql
+-- In-progress keys are leased to the request that claimed them. Once the lease runs
+-- out a retry may take the key over; the owner token tells the two claimants apart.
+
+ALTER TABLE idempotency_keys ADD COLUMN owner_token VARCHAR(36);
+ALTER TABLE idempotency_keys ADD COLUMN lease_expires_at TIMESTAMP;
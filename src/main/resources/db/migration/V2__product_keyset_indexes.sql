@@ -0,0 +1,9 @@
+-- V2__product_keyset_indexes.sql
+-- Composite indexes backing keyset pagination of the product catalog.
+-- Each index matches a (filter, sort key, id) seek so deep pages avoid scans.
+
+CREATE INDEX idx_products_active_id ON products(is_active, id);
+CREATE INDEX idx_products_active_price ON products(is_active, price, id);
+CREATE INDEX idx_products_active_created ON products(is_active, created_at, id);
+CREATE INDEX idx_products_active_name ON products(is_active, name, id);
+CREATE INDEX idx_products_category_active_id ON products(category_id, is_active, id);
@@ -0,0 +1,13 @@
+-- V3__create_catalog_changes.sql
+-- Change log of catalog mutations, tailed by every API node to invalidate local caches.
+
+CREATE TABLE catalog_changes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    node_id VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_catalog_changes_created ON catalog_changes(created_at);
@@ -0,0 +1,16 @@
+-- V5__create_stock_reservations.sql
+-- Time-limited stock holds placed when checkout starts and released on order, cancel or expiry.
+
+CREATE TABLE stock_reservations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_stock_reservations_user ON stock_reservations(user_id);
+CREATE INDEX idx_stock_reservations_expires ON stock_reservations(expires_at);
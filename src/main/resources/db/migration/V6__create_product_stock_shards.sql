@@ -0,0 +1,11 @@
+-- V6__create_product_stock_shards.sql
+-- Stock of hot products split across counter rows, so concurrent checkouts do not
+-- all queue on the products row. A product is in hot mode while it has shard rows.
+
+CREATE TABLE product_stock_shards (
+    product_id BIGINT NOT NULL,
+    shard INT NOT NULL,
+    quantity INT NOT NULL,
+    PRIMARY KEY (product_id, shard),
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE
+);
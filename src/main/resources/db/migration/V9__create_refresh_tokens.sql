@@ -0,0 +1,33 @@
+-- V9__create_refresh_tokens.sql
+-- Rotating refresh tokens, stored as SHA-256 hashes. Every rotation revokes the old row
+-- and adds one to the same family; presenting a revoked token revokes the whole family.
+
+CREATE TABLE refresh_tokens (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    token_hash VARCHAR(64) NOT NULL UNIQUE,
+    family_id VARCHAR(36) NOT NULL,
+    revoked BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_refresh_tokens_family ON refresh_tokens(family_id);
+CREATE INDEX idx_refresh_tokens_user ON refresh_tokens(user_id);
+CREATE INDEX idx_refresh_tokens_expires ON refresh_tokens(expires_at);
+
+-- Revoked access tokens, tailed by every API node. A row names either one token id,
+-- or a user whose tokens issued before revoked_before are all revoked.
+-- Rows are dropped once every token they cover has expired.
+
+CREATE TABLE token_revocations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    token_id VARCHAR(36),
+    user_id BIGINT,
+    revoked_before TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_token_revocations_expires ON token_revocations(expires_at);
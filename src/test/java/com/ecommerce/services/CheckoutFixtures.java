@@ -0,0 +1,75 @@
+package com.ecommerce.services;
+
+import com.ecommerce.dto.CreateOrderRequest;
+import com.ecommerce.entities.*;
+import com.ecommerce.repositories.AddressRepository;
+import com.ecommerce.repositories.CartItemRepository;
+import com.ecommerce.repositories.CartRepository;
+import com.ecommerce.repositories.ProductRepository;
+import com.ecommerce.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Creates products and customers with a filled cart for checkout tests.
+ */
+@TestComponent
+@RequiredArgsConstructor
+class CheckoutFixtures {
+    
+    private final UserRepository userRepository;
+    private final AddressRepository addressRepository;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    
+    /**
+     * A customer ready to check out, with the request that ships to their address.
+     */
+    record Customer(User user, CreateOrderRequest request) {
+    }
+    
+    Product product(int stock) {
+        return productRepository.save(Product.builder()
+                .name("Test product " + UUID.randomUUID())
+                .description("Created by a checkout test")
+                .price(new BigDecimal("19.99"))
+                .stockQuantity(stock)
+                .build());
+    }
+    
+    /**
+     * A new customer with a shipping address and a cart holding the given quantity per product.
+     */
+    Customer customer(Map<Product, Integer> lines) {
+        User user = userRepository.save(User.builder()
+                .email(UUID.randomUUID() + "@example.com")
+                .password("not-used")
+                .firstName("Test")
+                .lastName("Customer")
+                .build());
+        Address address = addressRepository.save(Address.builder()
+                .user(user)
+                .street("1 Test Street")
+                .city("Springfield")
+                .state("IL")
+                .postalCode("62701")
+                .country("USA")
+                .isDefault(true)
+                .addressType(AddressType.SHIPPING)
+                .build());
+        Cart cart = cartRepository.save(Cart.builder()
+                .user(user)
+                .build());
+        lines.forEach((product, quantity) -> cartItemRepository.save(CartItem.builder()
+                .cart(cart)
+                .product(product)
+                .quantity(quantity)
+                .build()));
+        return new Customer(user, new CreateOrderRequest(address.getId()));
+    }
+}
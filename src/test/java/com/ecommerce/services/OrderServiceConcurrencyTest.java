@@ -0,0 +1,158 @@
+package com.ecommerce.services;
+
+import com.ecommerce.entities.Product;
+import com.ecommerce.exceptions.BadRequestException;
+import com.ecommerce.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hundreds of customers check out the same scarce products at once, alone or in
+ * groups; exactly the stock on hand is sold, stock never goes negative and no
+ * checkout deadlocks.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(CheckoutFixtures.class)
+class OrderServiceConcurrencyTest {
+    
+    private static final int STOCK = 50;
+    private static final int CUSTOMERS = 200;
+    private static final int THREADS = 32;
+    
+    @Autowired
+    private OrderService orderService;
+    
+    @Autowired
+    private HotStockService hotStockService;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private CheckoutFixtures fixtures;
+    
+    @Test
+    void parallelCheckoutsNeverOversell() throws Exception {
+        Product product = fixtures.product(STOCK);
+        
+        Outcome outcome = checkOutInParallel(Map.of(product, 1));
+        
+        assertThat(outcome.placed()).isEqualTo(STOCK);
+        assertThat(outcome.refused()).isEqualTo(CUSTOMERS - STOCK);
+        assertThat(stockOf(product)).isZero();
+    }
+    
+    @Test
+    void parallelMultiLineCheckoutsNeverOversell() throws Exception {
+        Product scarce = fixtures.product(STOCK);
+        Product plenty = fixtures.product(CUSTOMERS * 2);
+        
+        Outcome outcome = checkOutInParallel(Map.of(plenty, 2, scarce, 1));
+        
+        assertThat(outcome.placed()).isEqualTo(STOCK);
+        assertThat(stockOf(scarce)).isZero();
+        // Failed checkouts roll back the lines they had already taken
+        assertThat(stockOf(plenty)).isEqualTo(CUSTOMERS * 2 - 2 * STOCK);
+    }
+    
+    @Test
+    void parallelCheckoutsOfHotProductNeverOversell() throws Exception {
+        Product product = fixtures.product(STOCK);
+        hotStockService.enable(product.getId(), 8);
+        try {
+            Outcome outcome = checkOutInParallel(Map.of(product, 1));
+            
+            assertThat(outcome.placed()).isEqualTo(STOCK);
+            assertThat(hotStockService.getShardedStock(product.getId())).isZero();
+        } finally {
+            hotStockService.disable(product.getId());
+        }
+        assertThat(stockOf(product)).isZero();
+    }
+    
+    @Test
+    void parallelGroupCheckoutsNeverDeadlock() throws Exception {
+        Product first = fixtures.product(CUSTOMERS);
+        Product second = fixtures.product(CUSTOMERS);
+        
+        // Half of the groups list the second product's buyer first, the other half the first's
+        List<Runnable> groups = new ArrayList<>(CUSTOMERS / 2);
+        for (int i = 0; i < CUSTOMERS / 2; i++) {
+            CheckoutFixtures.Customer buyer = fixtures.customer(Map.of(first, 1));
+            CheckoutFixtures.Customer other = fixtures.customer(Map.of(second, 1));
+            List<CheckoutFixtures.Customer> group = i % 2 == 0 ? List.of(other, buyer) : List.of(buyer, other);
+            groups.add(() -> orderService.createOrders(
+                    group.stream().map(CheckoutFixtures.Customer::user).toList(),
+                    group.stream().map(CheckoutFixtures.Customer::request).toList()));
+        }
+        
+        Outcome outcome = inParallel(groups);
+        
+        assertThat(outcome.placed()).isEqualTo(CUSTOMERS / 2);
+        assertThat(stockOf(first)).isEqualTo(CUSTOMERS - CUSTOMERS / 2);
+        assertThat(stockOf(second)).isEqualTo(CUSTOMERS - CUSTOMERS / 2);
+    }
+    
+    /**
+     * Let every customer check out the same cart at once.
+     */
+    private Outcome checkOutInParallel(Map<Product, Integer> cart) throws Exception {
+        List<Runnable> checkouts = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            CheckoutFixtures.Customer customer = fixtures.customer(cart);
+            checkouts.add(() -> orderService.createOrder(customer.user(), customer.request()));
+        }
+        return inParallel(checkouts);
+    }
+    
+    /**
+     * Start every checkout at once. Any failure other than running out of stock fails the test.
+     */
+    private Outcome inParallel(List<Runnable> checkouts) throws Exception {
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> running = new ArrayList<>(checkouts.size());
+            for (Runnable checkout : checkouts) {
+                running.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        checkout.run();
+                        placed.incrementAndGet();
+                    } catch (BadRequestException e) {
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> checkout : running) {
+                checkout.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Outcome(placed.get(), refused.get());
+    }
+    
+    private int stockOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStockQuantity();
+    }
+    
+    private record Outcome(int placed, int refused) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.ecommerce.services;
+
+import com.ecommerce.entities.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A checkout issues the same statements whatever the size of the cart: stock is
+ * locked and taken with one statement each, inserts are batched and the cart is
+ * cleared with one statement. Only the checkout thread is recorded, and pooled
+ * sequence refills are left out, as when they fall depends on earlier inserts.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import({CheckoutFixtures.class, StatementRecorder.class})
+class OrderServiceStatementCountTest {
+    
+    /**
+     * Cart and address reads, claiming holds, locking and taking the stock, the
+     * change log row, the order, its items, clearing the cart and bumping its version.
+     */
+    private static final int STATEMENTS_PER_CHECKOUT = 10;
+    
+    @Autowired
+    private OrderService orderService;
+    
+    @Autowired
+    private CheckoutFixtures fixtures;
+    
+    @Autowired
+    private StatementRecorder recorder;
+    
+    @Test
+    void statementCountDoesNotGrowWithCartSize() {
+        // The first checkout also fills caches, so it is not measured
+        statementsPerCheckout(1);
+        
+        List<String> oneLine = statementsPerCheckout(1);
+        assertThat(oneLine).as(String.join("\n", oneLine)).hasSize(STATEMENTS_PER_CHECKOUT);
+        List<String> thirtyLines = statementsPerCheckout(30);
+        assertThat(thirtyLines).as(String.join("\n", thirtyLines)).hasSize(STATEMENTS_PER_CHECKOUT);
+    }
+    
+    private List<String> statementsPerCheckout(int lines) {
+        Map<Product, Integer> cart = new LinkedHashMap<>();
+        for (int line = 0; line < lines; line++) {
+            cart.put(fixtures.product(100), 1 + line % 3);
+        }
+        CheckoutFixtures.Customer customer = fixtures.customer(cart);
+        
+        return recorder.record(() -> orderService.createOrder(customer.user(), customer.request())).stream()
+                .filter(sql -> !sql.toLowerCase().contains("next value for"))
+                .toList();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ecommerce.services;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the data source to record the SQL that a piece of code sends from the
+ * calling thread only, so schedulers and rebuilders running meanwhile are left
+ * out. A JDBC batch is recorded once, as it is one prepared statement.
+ */
+@TestComponent
+class StatementRecorder implements BeanPostProcessor {
+    
+    private static final ThreadLocal<List<String>> RECORDING = new ThreadLocal<>();
+    
+    /**
+     * Run the action and return the statements it prepared or executed on this thread.
+     */
+    List<String> record(Runnable action) {
+        List<String> statements = new ArrayList<>();
+        RECORDING.set(statements);
+        try {
+            action.run();
+        } finally {
+            RECORDING.remove();
+        }
+        return statements;
+    }
+    
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return recording(super.getConnection());
+            }
+            
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return recording(super.getConnection(username, password));
+            }
+        };
+    }
+    
+    private static Connection recording(Connection connection) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("prepareCall")) {
+                add((String) args[0]);
+            }
+            Object result = invoke(method, connection, args);
+            return name.equals("createStatement") ? recording((Statement) result) : result;
+        });
+    }
+    
+    private static Statement recording(Statement statement) {
+        return proxy(Statement.class, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute") && args != null && args.length > 0) {
+                add((String) args[0]);
+            }
+            return invoke(method, statement, args);
+        });
+    }
+    
+    private static void add(String sql) {
+        List<String> statements = RECORDING.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+    }
+    
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}